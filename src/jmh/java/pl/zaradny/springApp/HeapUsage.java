@@ -0,0 +1,23 @@
+package pl.zaradny.springApp;
+
+/**
+ * Heap measurements for single-shot benchmarks, which take {@link #afterGc()} before and after building what they
+ * measure and report the difference through {@link RetainedHeap}.
+ */
+public final class HeapUsage {
+
+    private HeapUsage() {
+    }
+
+    public static long afterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static long kilobytesSince(long usedBefore) {
+        return (afterGc() - usedBefore) >> 10;
+    }
+}
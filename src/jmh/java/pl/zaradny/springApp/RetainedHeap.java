@@ -0,0 +1,19 @@
+package pl.zaradny.springApp;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Reports how much heap a benchmark left reachable, as a secondary result next to its time. Every public member of
+ * an auxiliary counter state is read as a counter, so measuring is left to {@link HeapUsage}.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class RetainedHeap {
+
+    public long retainedKilobytes;
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        retainedKilobytes = 0;
+    }
+}
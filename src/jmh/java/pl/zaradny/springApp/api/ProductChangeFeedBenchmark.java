@@ -0,0 +1,33 @@
+package pl.zaradny.springApp.api;
+
+import org.openjdk.jmh.annotations.*;
+import pl.zaradny.springApp.api.ProductChangeFeed.SlowConsumerPolicy;
+import pl.zaradny.springApp.domain.ProductChange;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductChangeFeedBenchmark {
+
+    private final ProductChange change = new ProductChange(ProductChange.Type.UPDATED, "product");
+
+    private ProductChangeFeed feed;
+
+    @Setup(Level.Trial)
+    public void createFeed() {
+        feed = new ProductChangeFeed(65536, SlowConsumerPolicy.DROP, 10_000, 60_000);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeFeed() {
+        feed.close();
+    }
+
+    @Benchmark
+    public long publish() {
+        feed.productChanged(change);
+        return feed.lastSequence();
+    }
+}
@@ -0,0 +1,27 @@
+package pl.zaradny.springApp.domain;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Generators are shared by every request thread, so compare them with -t <cores> as well as with one thread.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdGeneratorBenchmark {
+
+    @Param({"uuid", "ulid"})
+    public String generator;
+
+    private IdGenerator idGenerator;
+
+    @Setup(Level.Trial)
+    public void createGenerator() {
+        idGenerator = generator.equals("ulid") ? new UlidIdGenerator() : new RandomUuidIdGenerator();
+    }
+
+    @Benchmark
+    public String nextId() {
+        return idGenerator.nextId();
+    }
+}
@@ -0,0 +1,74 @@
+package pl.zaradny.springApp.domain;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import pl.zaradny.springApp.infrastructure.InMemoryProductRepository;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductFacadeBenchmark {
+
+    private static final int TAGS = 2000;
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogSize;
+
+    private ProductFacade productFacade;
+    private ProductFacade meteredProductFacade;
+    private String[] ids;
+    private ProductRequestDto[] requests;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        ProductFacadeImpl facade = new ProductFacadeImpl(new InMemoryProductRepository(), List.of(),
+                new UlidIdGenerator());
+        productFacade = facade;
+        meteredProductFacade = new MeteredProductFacade(facade, new SimpleMeterRegistry());
+        ids = new String[catalogSize];
+        requests = new ProductRequestDto[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            requests[i] = request(i);
+            ids[i] = productFacade.create(requests[i]).getId();
+        }
+    }
+
+    // Deletes what it creates, so the catalog stays at catalogSize however many invocations an iteration runs.
+    @Benchmark
+    public ProductResponseDto createAndDelete() {
+        ProductResponseDto created = productFacade.create(requests[ThreadLocalRandom.current().nextInt(catalogSize)]);
+        productFacade.deleteById(created.getId());
+        return created;
+    }
+
+    @Benchmark
+    public ProductResponseDto findById() {
+        return productFacade.findById(ids[ThreadLocalRandom.current().nextInt(catalogSize)]);
+    }
+
+    // Compared with findById, shows what timing every call costs on the cheapest operation.
+    @Benchmark
+    public ProductResponseDto findByIdMetered() {
+        return meteredProductFacade.findById(ids[ThreadLocalRandom.current().nextInt(catalogSize)]);
+    }
+
+    @Benchmark
+    public ProductsResponseDto getAll() {
+        return productFacade.getAll();
+    }
+
+    @Benchmark
+    public ProductsResponseDto findByTag() {
+        return productFacade.findByTag("tag" + ThreadLocalRandom.current().nextInt(TAGS));
+    }
+
+    private static ProductRequestDto request(int index) {
+        return new ProductRequestDto("product " + index, new PriceDto(index % 1000 + ".99", "PLN"),
+                new ImageDto("https://via.placeholder.com/" + index), new DescriptionDto("description " + index),
+                List.of(new TagDto("tag" + index % TAGS)));
+    }
+}
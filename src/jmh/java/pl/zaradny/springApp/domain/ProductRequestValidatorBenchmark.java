@@ -0,0 +1,47 @@
+package pl.zaradny.springApp.domain;
+
+import com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductRequestValidatorBenchmark {
+
+    private final ProductRequestValidator validator = new ProductRequestValidator();
+    private final ProductRequestDto valid = new ProductRequestDto("product", new PriceDto("10.99", "PLN"),
+            new ImageDto("https://via.placeholder.com/150"), new DescriptionDto("description"),
+            Arrays.asList(new TagDto("tag1"), new TagDto("tag2")));
+    private final ProductRequestDto invalid = new ProductRequestDto("", new PriceDto("ten", "XYZ"),
+            new ImageDto("siema"), new DescriptionDto(Strings.repeat("a", 401)),
+            Arrays.asList(new TagDto("tag1"), new TagDto("")));
+
+    @Benchmark
+    public List<ViolationDto> validRequest() {
+        return validator.validate(valid);
+    }
+
+    // Collects every violation of the request.
+    @Benchmark
+    public List<ViolationDto> invalidRequest() {
+        return validator.validate(invalid);
+    }
+
+    // The previous approach, for comparison: parse fields until the first one throws.
+    @Benchmark
+    public boolean invalidRequestFailingOnFirstException() {
+        try {
+            new BigDecimal(invalid.getPrice().getAmount());
+            Currency.getInstance(invalid.getPrice().getCurrency());
+            return false;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return true;
+        }
+    }
+}
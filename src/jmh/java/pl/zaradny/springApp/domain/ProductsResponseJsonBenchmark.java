@@ -0,0 +1,40 @@
+package pl.zaradny.springApp.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductsResponseJsonBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int products;
+
+    private ObjectWriter writer;
+    private ProductsResponseDto response;
+
+    @Setup(Level.Trial)
+    public void prepareResponse() {
+        writer = new ObjectMapper().writerFor(ProductsResponseDto.class);
+        List<ProductResponseDto> page = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            page.add(new ProductResponseDto(String.format("%08d", i), "product " + i,
+                    new PriceDto(i % 1000 + ".99", "PLN"), new ImageDto("https://via.placeholder.com/" + i),
+                    new DescriptionDto("description " + i), Set.of(new TagDto("tag" + i % 2000)), 1));
+        }
+        response = new ProductsResponseDto(page, "MDAwMDAwMDk");
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return writer.writeValueAsBytes(response);
+    }
+}
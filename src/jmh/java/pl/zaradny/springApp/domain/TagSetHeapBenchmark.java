@@ -0,0 +1,55 @@
+package pl.zaradny.springApp.domain;
+
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.*;
+import pl.zaradny.springApp.HeapUsage;
+import pl.zaradny.springApp.RetainedHeap;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// The result to look at is retainedKilobytes: the tag sets products share against per-product copies of the names.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TagSetHeapBenchmark {
+
+    @Param({"shared", "copied"})
+    public String tags;
+
+    @Param({"100000"})
+    public int products;
+
+    @Benchmark
+    public Set<?>[] retainTags(RetainedHeap retainedHeap) {
+        long before = HeapUsage.afterGc();
+        Set<?>[] retained = new Set<?>[products];
+        for (int i = 0; i < products; i++) {
+            retained[i] = tags.equals("shared") ? sharedTags(i) : ImmutableSet.of(tagName(i), groupName(i));
+        }
+        retainedHeap.retainedKilobytes = HeapUsage.kilobytesSince(before);
+        return retained;
+    }
+
+    private static Set<Tag> sharedTags(int i) {
+        return Product.build()
+                .withId(String.valueOf(i))
+                .withName("product")
+                .withPrice(Price.build("100", "PLN"))
+                .withCreatedAt(LocalDateTime.now())
+                .withTags(Set.of(Tag.build(tagName(i)), Tag.build(groupName(i))))
+                .build()
+                .getTags()
+                .get();
+    }
+
+    // Names are built per product, the way each request deserializes its own strings.
+    private static String tagName(int i) {
+        return "tag" + i % 2000;
+    }
+
+    private static String groupName(int i) {
+        return "group" + i % 7;
+    }
+}
@@ -0,0 +1,112 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.openjdk.jmh.annotations.*;
+import pl.zaradny.springApp.domain.Price;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.exceptions.ProductVersionConflictException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InMemoryProductRepositoryBenchmark {
+
+    // Every product carries one of 2000 tags, so a tag matches catalogSize / 2000 products.
+    private static final int TAGS = 2000;
+    private static final int HOT_PRODUCTS = 4;
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogSize;
+
+    private InMemoryProductRepository repository;
+    private Product[] products;
+    // Replacements are built up front so that update times the repository alone; the version of the stored product
+    // only has to match the one it replaces, so updates alternate between the two.
+    private Product[] updatedProducts;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        repository = new InMemoryProductRepository();
+        products = new Product[catalogSize];
+        updatedProducts = new Product[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            products[i] = product(i, 1);
+            updatedProducts[i] = product(i, 2);
+            repository.save(products[i]);
+        }
+    }
+
+    @Benchmark
+    public Product findById() {
+        return repository.findById(randomProduct().getId());
+    }
+
+    @Benchmark
+    public Product update() {
+        int index = ThreadLocalRandom.current().nextInt(catalogSize);
+        Product current = repository.findById(products[index].getId());
+        return repository.update(current, current.getVersion() == 1 ? updatedProducts[index] : products[index]);
+    }
+
+    // Nine reads to every write; run it with -t 1 and with as many threads as cores to see how it scales.
+    @Benchmark
+    public Product mixedReadWrite() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(catalogSize);
+        Product current = repository.findById(products[index].getId());
+        if (random.nextInt(10) != 0) {
+            return current;
+        }
+        try {
+            return repository.update(current, current.getVersion() == 1 ? updatedProducts[index] : products[index]);
+        } catch (ProductVersionConflictException e) {
+            // another thread updated the product in between, which is part of the traffic being measured
+            return current;
+        }
+    }
+
+    // Every thread updates one of a few products, retrying until its compare-and-set wins; run it with -t <cores>.
+    @Benchmark
+    public Product contendedUpdate() {
+        int index = ThreadLocalRandom.current().nextInt(HOT_PRODUCTS);
+        while (true) {
+            Product current = repository.findById(products[index].getId());
+            try {
+                return repository.update(current, current.getVersion() == 1 ? updatedProducts[index] : products[index]);
+            } catch (ProductVersionConflictException e) {
+                // lost the race, retry on the newer version
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Product> findByTag() {
+        return repository.findByTag(Tag.build("tag" + ThreadLocalRandom.current().nextInt(TAGS)));
+    }
+
+    @Benchmark
+    public List<Product> getPage() {
+        return repository.getPage(randomProduct().getId(), 100);
+    }
+
+    private Product randomProduct() {
+        return products[ThreadLocalRandom.current().nextInt(catalogSize)];
+    }
+
+    private static Product product(int index, long version) {
+        return Product.build()
+                .withId(String.format("%08d", index))
+                .withName("product " + index)
+                .withPrice(Price.build(index % 1000 + ".99", "PLN"))
+                .withCreatedAt(LocalDateTime.now())
+                .withTags(Set.of(Tag.build("tag" + index % TAGS)))
+                .withVersion(version)
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.openjdk.jmh.annotations.*;
+import pl.zaradny.springApp.HeapUsage;
+import pl.zaradny.springApp.RetainedHeap;
+import pl.zaradny.springApp.domain.Description;
+import pl.zaradny.springApp.domain.Image;
+import pl.zaradny.springApp.domain.Price;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// The result to look at is retainedKilobytes, which counts the rows together with every index the store keeps; the
+// time includes the collections taken around the fill. The largest catalog needs a heap to match for the in-memory store.
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductRepositoryHeapBenchmark {
+
+    @Param({"memory", "offheap"})
+    public String store;
+
+    @Param({"100000", "1000000", "5000000"})
+    public int catalogSize;
+
+    @Benchmark
+    public ProductRepository fill(RetainedHeap retainedHeap) {
+        long before = HeapUsage.afterGc();
+        ProductRepository repository = store.equals("offheap") ? new OffHeapProductRepository()
+                : new InMemoryProductRepository();
+        for (int i = 0; i < catalogSize; i++) {
+            repository.save(Product.build()
+                    .withId(String.format("%08d", i))
+                    .withName("product " + i)
+                    .withPrice(Price.build(i % 1000 + ".99", i % 2 == 0 ? "PLN" : "EUR"))
+                    .withCreatedAt(LocalDateTime.now())
+                    .withImage(Image.build("https://via.placeholder.com/" + i))
+                    .withDescription(Description.build("description of product " + i))
+                    .withTags(Set.of(Tag.build("tag" + i % 2000), Tag.build("group" + i % 7)))
+                    .build());
+        }
+        retainedHeap.retainedKilobytes = HeapUsage.kilobytesSince(before);
+        return repository;
+    }
+}
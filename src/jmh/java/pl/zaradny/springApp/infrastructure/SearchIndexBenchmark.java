@@ -0,0 +1,60 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.openjdk.jmh.annotations.*;
+import pl.zaradny.springApp.domain.Price;
+import pl.zaradny.springApp.domain.Product;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchIndexBenchmark {
+
+    // "product" is in every name, a colour in one name in eight and a number in one name in a thousand.
+    private static final String[] COLOURS = {"red", "blue", "green", "black", "white", "oak", "steel", "glass"};
+    private static final int LIMIT = 20;
+
+    @Param({"100000", "1000000"})
+    public int catalogSize;
+
+    private SearchIndex index;
+
+    @Setup(Level.Trial)
+    public void fillIndex() {
+        index = new SearchIndex();
+        LocalDateTime createdAt = LocalDateTime.now();
+        for (int i = 0; i < catalogSize; i++) {
+            index.replace(null, Product.build()
+                    .withId(String.format("%08d", i))
+                    .withName("product " + COLOURS[i % COLOURS.length] + " " + i % 1000)
+                    .withPrice(Price.build("100", "PLN"))
+                    .withCreatedAt(createdAt)
+                    .withTags(Set.of())
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public List<String> termInEveryProduct() {
+        return index.search("product", LIMIT);
+    }
+
+    @Benchmark
+    public List<String> commonTerm() {
+        return index.search("red", LIMIT);
+    }
+
+    @Benchmark
+    public List<String> twoCommonTerms() {
+        return index.search("red blue", LIMIT);
+    }
+
+    @Benchmark
+    public List<String> commonAndRareTerm() {
+        return index.search("red 7", LIMIT);
+    }
+}
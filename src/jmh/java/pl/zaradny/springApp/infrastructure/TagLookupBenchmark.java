@@ -0,0 +1,51 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.openjdk.jmh.annotations.*;
+import pl.zaradny.springApp.domain.Price;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Kept apart from InMemoryProductRepositoryBenchmark so that only this lookup pays for the multi-million catalogs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TagLookupBenchmark {
+
+    // The first 100 products carry a rare tag, which matches as many products whatever the catalog size.
+    private static final int RARE_MATCHES = 100;
+    private static final Tag RARE = Tag.build("rare");
+    private static final Tag COMMON = Tag.build("common");
+
+    @Param({"1000", "10000", "100000", "1000000", "5000000"})
+    public int catalogSize;
+
+    private InMemoryProductRepository repository;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        repository = new InMemoryProductRepository();
+        Price price = Price.build("100", "PLN");
+        LocalDateTime createdAt = LocalDateTime.now();
+        Set<Tag> rareTags = Set.of(RARE, COMMON);
+        Set<Tag> commonTags = Set.of(COMMON);
+        for (int i = 0; i < catalogSize; i++) {
+            repository.save(Product.build()
+                    .withId(String.format("%08d", i))
+                    .withName("product")
+                    .withPrice(price)
+                    .withCreatedAt(createdAt)
+                    .withTags(i < RARE_MATCHES ? rareTags : commonTags)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public List<Product> findByRareTag() {
+        return repository.findByTag(RARE);
+    }
+}
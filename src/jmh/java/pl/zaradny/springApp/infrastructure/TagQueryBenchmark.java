@@ -0,0 +1,55 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.openjdk.jmh.annotations.*;
+import pl.zaradny.springApp.domain.Price;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.domain.TagQuery;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TagQueryBenchmark {
+
+    // color3,size4,!brand3 matches one product in 70.
+    private static final TagQuery QUERY = TagQuery.parse("color3,size4,!brand3", null);
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private InMemoryProductRepository repository;
+    private String middleId;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        repository = new InMemoryProductRepository();
+        LocalDateTime createdAt = LocalDateTime.now();
+        for (int i = 0; i < catalogSize; i++) {
+            repository.save(Product.build()
+                    .withId(String.format("%08d", i))
+                    .withName("product")
+                    .withPrice(Price.build("100", "PLN"))
+                    .withCreatedAt(createdAt)
+                    .withTags(Set.of(Tag.build("color" + i % 10), Tag.build("size" + i % 7),
+                            Tag.build("brand" + i % 1000)))
+                    .build());
+        }
+        middleId = String.format("%08d", catalogSize / 2);
+    }
+
+    @Benchmark
+    public List<Product> firstPage() {
+        return repository.findByTags(QUERY, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Product> pageFromMiddle() {
+        return repository.findByTags(QUERY, middleId, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,61 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.openjdk.jmh.annotations.*;
+import pl.zaradny.springApp.domain.Price;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Sampled, so that the report shows the latency percentiles of a write under each fsync policy.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WriteAheadLogProductRepositoryBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+
+    @Param({"ALWAYS", "INTERVAL", "NEVER"})
+    public FsyncPolicy fsyncPolicy;
+
+    private Path logFile;
+    private WriteAheadLogProductRepository repository;
+    private Product[] products;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void openLog() throws IOException {
+        logFile = Files.createTempFile("products", ".wal");
+        repository = new WriteAheadLogProductRepository(logFile.toString(), fsyncPolicy, 10);
+        products = new Product[PRODUCTS];
+        LocalDateTime createdAt = LocalDateTime.now();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products[i] = Product.build()
+                    .withId(String.format("%08d", i))
+                    .withName("product " + i)
+                    .withPrice(Price.build("100", "PLN"))
+                    .withCreatedAt(createdAt)
+                    .withTags(Set.of(Tag.build("tag")))
+                    .build();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLog() throws IOException {
+        repository.close();
+        Files.deleteIfExists(logFile);
+    }
+
+    // Saving an id again overwrites it, so the catalog stays at PRODUCTS while the log keeps growing, as it does.
+    @Benchmark
+    public Product save() {
+        Product product = products[next++ % PRODUCTS];
+        repository.save(product);
+        return product;
+    }
+}
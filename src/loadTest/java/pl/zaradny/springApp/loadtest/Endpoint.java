@@ -0,0 +1,89 @@
+package pl.zaradny.springApp.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * One kind of request in the traffic mix, with the latencies recorded for it.
+ */
+final class Endpoint {
+
+    private static final long MAX_RECORDED_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final String name;
+    private final int weight;
+    private final Function<Random, HttpRequest> requests;
+    // Measured from when the request was due to be sent, so stalls of the generator or server are not hidden.
+    private final Histogram responseTimes = new ConcurrentHistogram(MAX_RECORDED_NANOS, 3);
+    // Measured from when it was actually sent: what a closed-model tool would report.
+    private final Histogram serviceTimes = new ConcurrentHistogram(MAX_RECORDED_NANOS, 3);
+    private final LongAdder errors = new LongAdder();
+
+    Endpoint(String name, int weight, Function<Random, HttpRequest> requests) {
+        this.name = name;
+        this.weight = weight;
+        this.requests = requests;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getWeight() {
+        return weight;
+    }
+
+    HttpRequest nextRequest(Random random) {
+        return requests.apply(random);
+    }
+
+    void record(long intendedNanos, long sentNanos, long completedNanos, boolean failed) {
+        responseTimes.recordValue(Math.min(completedNanos - intendedNanos, MAX_RECORDED_NANOS));
+        serviceTimes.recordValue(Math.min(completedNanos - sentNanos, MAX_RECORDED_NANOS));
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    void reset() {
+        responseTimes.reset();
+        serviceTimes.reset();
+        errors.reset();
+    }
+
+    static String summaryHeader() {
+        return String.format("%-14s %9s %7s %9s %9s %9s %9s %9s | %13s %13s", "endpoint", "requests", "errors",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "uncorr p99", "uncorr p99.9");
+    }
+
+    String summary() {
+        return String.format("%-14s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f | %13.2f %13.2f", name,
+                responseTimes.getTotalCount(), errors.sum(), millis(responseTimes, 50), millis(responseTimes, 90),
+                millis(responseTimes, 99), millis(responseTimes, 99.9), responseTimes.getMaxValue() / NANOS_PER_MILLI,
+                millis(serviceTimes, 99), millis(serviceTimes, 99.9));
+    }
+
+    /**
+     * Writes the full percentile distribution in milliseconds, in the .hgrm format HdrHistogram's plotter reads.
+     */
+    void writeDistribution(Path directory) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hgrm")))) {
+            responseTimes.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,65 @@
+package pl.zaradny.springApp.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a constant arrival rate, whether or not earlier ones have completed. Each request has a fixed
+ * due time and its latency is counted from then; a generator that waited for responses, or fell behind and only
+ * timed what it managed to send, would hide exactly the stalls that make up the tail (coordinated omission).
+ */
+final class OpenModelLoadGenerator {
+
+    private final HttpClient client;
+    private final List<Endpoint> endpoints;
+    private final int totalWeight;
+
+    OpenModelLoadGenerator(HttpClient client, List<Endpoint> endpoints) {
+        this.client = client;
+        this.endpoints = endpoints;
+        this.totalWeight = endpoints.stream().mapToInt(Endpoint::getWeight).sum();
+    }
+
+    void run(int requestsPerSecond, Duration duration, Random random) throws InterruptedException, TimeoutException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        long requests = duration.toNanos() / intervalNanos;
+        Phaser inFlight = new Phaser(1);
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long intendedNanos = start + i * intervalNanos;
+            long wait;
+            while ((wait = intendedNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Endpoint endpoint = pick(random);
+            HttpRequest request = endpoint.nextRequest(random);
+            inFlight.register();
+            long sentNanos = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                endpoint.record(intendedNanos, sentNanos, System.nanoTime(),
+                        error != null || response.statusCode() >= 400);
+                inFlight.arriveAndDeregister();
+            });
+        }
+        inFlight.awaitAdvanceInterruptibly(inFlight.arrive(), 1, TimeUnit.MINUTES);
+    }
+
+    private Endpoint pick(Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Endpoint endpoint : endpoints) {
+            ticket -= endpoint.getWeight();
+            if (ticket < 0) {
+                return endpoint;
+            }
+        }
+        throw new IllegalStateException("Weights changed while picking");
+    }
+}
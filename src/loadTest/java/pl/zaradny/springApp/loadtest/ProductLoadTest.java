@@ -0,0 +1,122 @@
+package pl.zaradny.springApp.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import pl.zaradny.springApp.SpringAppApplication;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Boots the application on a random port, seeds a catalog and drives a constant-rate mix of reads and writes
+ * against {@code /products}, then reports latency percentiles per endpoint. Run with {@code ./gradlew loadTest};
+ * rate, duration, catalog size and the web stack ({@code servlet} or {@code reactive}) are set with
+ * {@code -Dloadtest.*} system properties, so both stacks can be compared under the same traffic.
+ */
+public class ProductLoadTest {
+
+    private static final int TAGS = 200;
+    private static final String JSON = "application/json";
+
+    public static void main(String[] args) throws Exception {
+        String stack = System.getProperty("loadtest.stack", "servlet");
+        Path reportDirectory = Paths.get(args.length > 0 ? args[0] : "build/reports/loadtest").resolve(stack);
+        int rate = Integer.getInteger("loadtest.rate", 500);
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("loadtest.warmupSeconds", 10));
+        Duration duration = Duration.ofSeconds(Integer.getInteger("loadtest.durationSeconds", 60));
+        int catalogSize = Integer.getInteger("loadtest.products", 10_000);
+
+        try (ConfigurableApplicationContext context = SpringApplication.run(SpringAppApplication.class,
+                "--server.port=0", "--spring.main.web-application-type=" + stack)) {
+            String productsUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/products";
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            List<String> ids = seedCatalog(client, productsUrl, catalogSize);
+            List<Endpoint> endpoints = trafficMix(productsUrl, ids);
+            OpenModelLoadGenerator generator = new OpenModelLoadGenerator(client, endpoints);
+
+            generator.run(rate, warmup, new Random(1));
+            endpoints.forEach(Endpoint::reset);
+            generator.run(rate, duration, new Random(2));
+
+            writeReport(reportDirectory, endpoints, stack, rate, duration);
+        }
+    }
+
+    private static List<Endpoint> trafficMix(String productsUrl, List<String> ids) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        endpoints.add(new Endpoint("get-by-id", 50, random ->
+                get(productsUrl + "/" + ids.get(random.nextInt(ids.size())))));
+        endpoints.add(new Endpoint("list-by-tag", 15, random ->
+                get(productsUrl + "?limit=50&tag=tag" + random.nextInt(TAGS))));
+        endpoints.add(new Endpoint("list-page", 10, random -> get(productsUrl + "?limit=100")));
+        endpoints.add(new Endpoint("search", 5, random ->
+                get(productsUrl + "/search?q=" + random.nextInt(ids.size()))));
+        endpoints.add(new Endpoint("update", 10, random ->
+                HttpRequest.newBuilder(URI.create(productsUrl + "/" + ids.get(random.nextInt(ids.size()))))
+                        .header("Content-Type", JSON)
+                        .PUT(HttpRequest.BodyPublishers.ofString(productJson(random.nextInt(ids.size()))))
+                        .build()));
+        endpoints.add(new Endpoint("create", 10, random -> post(productsUrl,
+                productJson(random.nextInt(ids.size())))));
+        return endpoints;
+    }
+
+    private static List<String> seedCatalog(HttpClient client, String productsUrl, int catalogSize)
+            throws IOException, InterruptedException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> ids = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            HttpResponse<String> response = client.send(post(productsUrl, productJson(i)),
+                    HttpResponse.BodyHandlers.ofString());
+            ids.add(objectMapper.readTree(response.body()).get("id").asText());
+        }
+        return ids;
+    }
+
+    private static void writeReport(Path directory, List<Endpoint> endpoints, String stack, int rate,
+                                    Duration duration) throws IOException {
+        Files.createDirectories(directory);
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%s stack, %d requests/s for %d s, latency from intended send time", stack, rate,
+                duration.getSeconds()));
+        lines.add(Endpoint.summaryHeader());
+        for (Endpoint endpoint : endpoints) {
+            lines.add(endpoint.summary());
+            endpoint.writeDistribution(directory);
+        }
+        Files.write(directory.resolve("report.txt"), lines);
+        lines.forEach(System.out::println);
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private static HttpRequest post(String url, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static String productJson(int index) {
+        return String.format("{\"name\":\"product %d\",\"price\":{\"amount\":\"%d.99\",\"currency\":\"PLN\"},"
+                + "\"description\":{\"text\":\"description of product %d\"},\"tags\":[{\"name\":\"tag%d\"}]}",
+                index, index % 1000, index, index % TAGS);
+    }
+}
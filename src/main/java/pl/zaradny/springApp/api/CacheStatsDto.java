@@ -0,0 +1,65 @@
+package pl.zaradny.springApp.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+public class CacheStatsDto {
+
+    private final long size;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final double hitRate;
+
+    @JsonCreator
+    public CacheStatsDto(@JsonProperty("size") long size,
+                         @JsonProperty("hits") long hits,
+                         @JsonProperty("misses") long misses,
+                         @JsonProperty("evictions") long evictions,
+                         @JsonProperty("hitRate") double hitRate) {
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.hitRate = hitRate;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CacheStatsDto that = (CacheStatsDto) o;
+        return size == that.size &&
+                hits == that.hits &&
+                misses == that.misses &&
+                evictions == that.evictions &&
+                Double.compare(that.hitRate, hitRate) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(size, hits, misses, evictions, hitRate);
+    }
+}
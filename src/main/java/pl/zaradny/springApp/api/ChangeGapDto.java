@@ -0,0 +1,49 @@
+package pl.zaradny.springApp.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+public class ChangeGapDto {
+
+    private final long firstMissed;
+    private final long lastMissed;
+
+    @JsonCreator
+    public ChangeGapDto(@JsonProperty("firstMissed") long firstMissed,
+                        @JsonProperty("lastMissed") long lastMissed) {
+        this.firstMissed = firstMissed;
+        this.lastMissed = lastMissed;
+    }
+
+    public long getFirstMissed() {
+        return firstMissed;
+    }
+
+    public long getLastMissed() {
+        return lastMissed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ChangeGapDto that = (ChangeGapDto) o;
+        return firstMissed == that.firstMissed &&
+                lastMissed == that.lastMissed;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(firstMissed, lastMissed);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeGapDto{" +
+                "firstMissed=" + firstMissed +
+                ", lastMissed=" + lastMissed +
+                '}';
+    }
+}
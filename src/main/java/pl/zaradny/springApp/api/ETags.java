@@ -0,0 +1,53 @@
+package pl.zaradny.springApp.api;
+
+/**
+ * Builds strong entity tags and evaluates {@code If-None-Match} headers against them.
+ */
+final class ETags {
+
+    private static final long NO_VERSION = 0;
+
+    private ETags() {}
+
+    static String of(String... parts) {
+        return '"' + String.join("-", parts) + '"';
+    }
+
+    /**
+     * If-None-Match uses the weak comparison, so a {@code W/} prefix on the client's tag is ignored.
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*")) {
+                return true;
+            }
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the product version out of an {@code If-Match} header holding one strong tag built by {@link #of}.
+     * If-Match uses the strong comparison, so weak or foreign tags yield a version no product ever has.
+     */
+    static long parseVersion(String ifMatch) {
+        String eTag = ifMatch.trim();
+        if (eTag.length() < 3 || eTag.charAt(0) != '"' || eTag.charAt(eTag.length() - 1) != '"') {
+            return NO_VERSION;
+        }
+        try {
+            return Long.parseLong(eTag.substring(1, eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            return NO_VERSION;
+        }
+    }
+}
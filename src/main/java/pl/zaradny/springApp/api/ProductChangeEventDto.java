@@ -0,0 +1,58 @@
+package pl.zaradny.springApp.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+public class ProductChangeEventDto {
+
+    private final long sequence;
+    private final String type;
+    private final String productId;
+
+    @JsonCreator
+    public ProductChangeEventDto(@JsonProperty("sequence") long sequence,
+                                 @JsonProperty("type") String type,
+                                 @JsonProperty("productId") String productId) {
+        this.sequence = sequence;
+        this.type = type;
+        this.productId = productId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductChangeEventDto that = (ProductChangeEventDto) o;
+        return sequence == that.sequence &&
+                Objects.equals(type, that.type) &&
+                Objects.equals(productId, that.productId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sequence, type, productId);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductChangeEventDto{" +
+                "sequence=" + sequence +
+                ", type='" + type + '\'' +
+                ", productId='" + productId + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,369 @@
+package pl.zaradny.springApp.api;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pl.zaradny.springApp.domain.ProductChange;
+import pl.zaradny.springApp.domain.ProductChangeListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Numbers every applied product change and keeps the most recent ones in a fixed-size ring, from which server-sent
+ * event subscribers are fed. Publishing is one atomic increment and one unfenced array store on the writing thread,
+ * plus an unpark of the dispatcher thread when it is idle. The dispatcher only hands subscribers with pending changes
+ * to sender threads and never writes to a client itself, so a client whose socket stops draining pins just its own
+ * sender. A send that takes longer than the send timeout gets the slow-consumer policy applied, and a subscriber the
+ * ring laps has the changes it missed reported as a gap. Only the servlet stack serves the feed, so only it starts the
+ * dispatcher and the senders.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class ProductChangeFeed implements ProductChangeListener, Closeable {
+
+    private static final int MAX_BATCH = 256;
+    private static final long HEARTBEAT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(15);
+    private static final long MAX_TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * What happens to a subscriber that is lapped by the ring or stuck in a send past the send timeout: it either
+     * gets a gap event and carries on from the newest change it can still get, or is disconnected, to resume with
+     * Last-Event-ID once it can keep up.
+     */
+    enum SlowConsumerPolicy { DROP, DISCONNECT }
+
+    private final AtomicReferenceArray<ProductChangeEventDto> ring;
+    private final int mask;
+    private final AtomicLong lastSequence = new AtomicLong();
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final long sendTimeoutNanos;
+    private final long timeoutMillis;
+    // Heartbeats and send timeouts are checked on every tick, changes are dispatched as soon as they are published.
+    private final long tickNanos;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders;
+    private final Thread dispatcher;
+    private volatile boolean dispatcherParked;
+    private volatile boolean rescanRequested;
+    private volatile boolean closed;
+
+    ProductChangeFeed(@Value("${products.changes.buffer-size:65536}") int bufferSize,
+                      @Value("${products.changes.slow-consumer:DROP}") SlowConsumerPolicy slowConsumerPolicy,
+                      @Value("${products.changes.send-timeout-ms:10000}") long sendTimeoutMillis,
+                      @Value("${products.changes.timeout-ms:1800000}") long timeoutMillis) {
+        if (bufferSize < 1 || bufferSize > 1 << 30) {
+            throw new IllegalArgumentException("Change buffer size must be between 1 and 2^30: " + bufferSize);
+        }
+        if (sendTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Change send timeout must be positive: " + sendTimeoutMillis);
+        }
+        int capacity = bufferSize == 1 ? 1 : Integer.highestOneBit(bufferSize - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.timeoutMillis = timeoutMillis;
+        this.tickNanos = Math.min(MAX_TICK_NANOS, sendTimeoutNanos / 4 + 1);
+        this.senders = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "product-change-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatch, "product-change-feed");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public void productChanged(ProductChange change) {
+        long sequence = lastSequence.incrementAndGet();
+        // Readers check the sequence of the event they find, so a store that is not visible yet only delays it.
+        ring.lazySet((int) (sequence & mask), new ProductChangeEventDto(sequence, change.getType().name(),
+                change.getProductId()));
+        // The dispatcher rechecks the sequence after announcing it parks, so one of the two sees the other.
+        if (dispatcherParked) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    long lastSequence() {
+        return lastSequence.get();
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Reads up to {@code max} consecutive changes starting at sequence {@code from}. Changes the ring no longer
+     * holds are skipped and reported in the batch, and the batch stops early at a change that is numbered but not
+     * stored yet, so the events it returns never have holes between them.
+     */
+    Batch read(long from, int max) {
+        long last = lastSequence.get();
+        long oldest = Math.max(1, last - mask);
+        ChangeGapDto gap = from < oldest ? new ChangeGapDto(from, oldest - 1) : null;
+        long sequence = Math.max(from, oldest);
+        List<ProductChangeEventDto> events = new ArrayList<>();
+        while (sequence <= last && events.size() < max) {
+            ProductChangeEventDto event = ring.get((int) (sequence & mask));
+            // Older than wanted: not stored yet. Newer: overwritten since last was read, reported on the next read.
+            if (event == null || event.getSequence() != sequence) {
+                break;
+            }
+            events.add(event);
+            sequence++;
+        }
+        return new Batch(gap, events, sequence);
+    }
+
+    /**
+     * Streams changes made after {@code lastSeen}, or only changes made from now on when it is null.
+     */
+    SseEmitter subscribe(Long lastSeen) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        register(emitter, lastSeen);
+        return emitter;
+    }
+
+    Subscription register(SseEmitter emitter, Long lastSeen) {
+        Subscription subscription = open(emitter, lastSeen);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        subscriptions.add(subscription);
+        wakeDispatcher();
+        return subscription;
+    }
+
+    Subscription open(SseEmitter emitter, Long lastSeen) {
+        long last = lastSequence.get();
+        if (lastSeen == null) {
+            return new Subscription(emitter, last + 1);
+        }
+        // Sequences start over on every start, so an id ahead of the feed was handed out before a restart.
+        return new Subscription(emitter, lastSeen > last ? 1 : lastSeen + 1);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        senders.shutdownNow();
+    }
+
+    private void wakeDispatcher() {
+        rescanRequested = true;
+        if (dispatcherParked) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            rescanRequested = false;
+            long last = lastSequence.get();
+            long now = System.nanoTime();
+            for (Subscription subscription : subscriptions) {
+                subscription.dispatch(last, now);
+            }
+            dispatcherParked = true;
+            if (!rescanRequested && lastSequence.get() == last) {
+                LockSupport.parkNanos(this, tickNanos);
+            }
+            dispatcherParked = false;
+        }
+    }
+
+    static final class Batch {
+
+        private final ChangeGapDto gap;
+        private final List<ProductChangeEventDto> events;
+        private final long next;
+
+        private Batch(ChangeGapDto gap, List<ProductChangeEventDto> events, long next) {
+            this.gap = gap;
+            this.events = Collections.unmodifiableList(events);
+            this.next = next;
+        }
+
+        ChangeGapDto getGap() {
+            return gap;
+        }
+
+        List<ProductChangeEventDto> getEvents() {
+            return events;
+        }
+
+        long getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * One subscriber's position in the feed. Its changes are sent by one sender at a time, and the ring stands in
+     * for its outbound queue: it is bounded by the ring capacity, past which the subscriber is lapped.
+     */
+    final class Subscription {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile long next;
+        private volatile long lastSentNanos = System.nanoTime();
+        // When the send in progress started, or 0 when none is.
+        private volatile long sendStartedNanos;
+        private volatile boolean skipRequested;
+        private volatile boolean closed;
+        private boolean drained;
+
+        private Subscription(SseEmitter emitter, long next) {
+            this.emitter = emitter;
+            this.next = next;
+        }
+
+        /**
+         * Sends every change the subscriber has not got yet, or a heartbeat when there is none and the stream has
+         * been quiet for a while. Returns once the subscriber is caught up, disconnected or gone.
+         */
+        void drain() {
+            try {
+                boolean sent = false;
+                while (!closed) {
+                    if (skipRequested) {
+                        skipRequested = false;
+                        skipToNewest();
+                    }
+                    Batch batch = read(next, MAX_BATCH);
+                    if (batch.getGap() == null && batch.getEvents().isEmpty()) {
+                        break;
+                    }
+                    if (batch.getGap() != null) {
+                        sendGap(batch.getGap());
+                        // A gap on the first read means the client resumed from history that is gone, not that it is slow.
+                        if (drained && slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+                            close();
+                            emitter.complete();
+                            return;
+                        }
+                        next = batch.getGap().getLastMissed() + 1;
+                    }
+                    for (ProductChangeEventDto event : batch.getEvents()) {
+                        // a send that timed out asked to skip what is left, or to stop sending altogether
+                        if (skipRequested || closed) {
+                            break;
+                        }
+                        send(SseEmitter.event()
+                                .id(Long.toString(event.getSequence()))
+                                .name("change")
+                                .data(event, MediaType.APPLICATION_JSON));
+                        next = event.getSequence() + 1;
+                    }
+                    drained = true;
+                    sent = true;
+                }
+                drained = true;
+                if (!sent && !closed && System.nanoTime() - lastSentNanos > HEARTBEAT_INTERVAL_NANOS) {
+                    send(SseEmitter.event().comment("heartbeat"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // the client went away, or the emitter was completed or timed out in the meantime
+                close();
+            }
+        }
+
+        long getNext() {
+            return next;
+        }
+
+        private void dispatch(long last, long now) {
+            if (closed) {
+                subscriptions.remove(this);
+            } else if (sending.get()) {
+                long started = sendStartedNanos;
+                if (started != 0 && now - started > sendTimeoutNanos) {
+                    sendTimedOut();
+                }
+            } else if ((next <= last || now - lastSentNanos > HEARTBEAT_INTERVAL_NANOS)
+                    && sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drainOnSender);
+                } catch (RejectedExecutionException e) {
+                    // the feed is closing
+                    sending.set(false);
+                }
+            }
+        }
+
+        private void drainOnSender() {
+            try {
+                drain();
+            } finally {
+                sending.set(false);
+            }
+            // A change published while this drain was finishing was not dispatched, as the subscriber was busy.
+            if (!closed && next <= lastSequence.get()) {
+                wakeDispatcher();
+            }
+        }
+
+        // Runs on the dispatcher while the sender is still blocked, so it must not touch the emitter, whose sends
+        // and completion share one lock: a disconnect completes it on a sender thread once the stuck send returns.
+        private void sendTimedOut() {
+            if (slowConsumerPolicy == SlowConsumerPolicy.DROP) {
+                skipRequested = true;
+            } else if (!closed) {
+                close();
+                try {
+                    senders.execute(emitter::complete);
+                } catch (RejectedExecutionException e) {
+                    // the feed is closing
+                }
+            }
+        }
+
+        private void skipToNewest() throws IOException {
+            long last = lastSequence.get();
+            if (next <= last) {
+                sendGap(new ChangeGapDto(next, last));
+                next = last + 1;
+            }
+        }
+
+        private void sendGap(ChangeGapDto gap) throws IOException {
+            send(SseEmitter.event()
+                    .name("gap")
+                    .data(gap, MediaType.APPLICATION_JSON));
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            sendStartedNanos = System.nanoTime();
+            try {
+                emitter.send(event);
+            } finally {
+                sendStartedNanos = 0;
+            }
+            lastSentNanos = System.nanoTime();
+        }
+
+        private void close() {
+            closed = true;
+            subscriptions.remove(this);
+        }
+    }
+}
@@ -1,20 +1,60 @@
 package pl.zaradny.springApp.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.CacheStats;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.zaradny.springApp.api.ProductJsonCache.SerializedProduct;
+import pl.zaradny.springApp.domain.BatchRequestDto;
+import pl.zaradny.springApp.domain.BatchResponseDto;
 import pl.zaradny.springApp.domain.ProductFacade;
 import pl.zaradny.springApp.domain.ProductRequestDto;
 import pl.zaradny.springApp.domain.ProductResponseDto;
 import pl.zaradny.springApp.domain.ProductsResponseDto;
+import pl.zaradny.springApp.domain.TagFacetsResponseDto;
+import pl.zaradny.springApp.domain.ValidationErrorResponseDto;
+import pl.zaradny.springApp.exceptions.ConflictingFiltersException;
+import pl.zaradny.springApp.exceptions.InvalidProductException;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/products")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 class ProductEndpoint {
 
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int DEFAULT_FACET_LIMIT = 100;
+    private static final String NDJSON = "application/x-ndjson";
+
     private final ProductFacade productFacade;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter exportWriter;
+    private final ProductJsonCache productJsonCache;
+    private final ProductChangeFeed productChangeFeed;
+    // Listing counters start from zero on every start, so their ETags also carry the start time.
+    private final String listingEpoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
 
-    ProductEndpoint(ProductFacade productFacade){
+    ProductEndpoint(ProductFacade productFacade, ObjectMapper objectMapper, ProductJsonCache productJsonCache,
+                    ProductChangeFeed productChangeFeed){
         this.productFacade = productFacade;
+        this.objectMapper = objectMapper;
+        this.productJsonCache = productJsonCache;
+        this.productChangeFeed = productChangeFeed;
+        this.exportWriter = objectMapper.writerFor(ProductResponseDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     @PostMapping
@@ -22,9 +62,62 @@ class ProductEndpoint {
         return productFacade.create(productRequestDto);
     }
 
+    @PostMapping("/batch")
+    BatchResponseDto applyBatch(@RequestBody BatchRequestDto batchRequestDto){
+        return productFacade.applyBatch(batchRequestDto);
+    }
+
+    // One product per line, written while the catalog is iterated. Writes block once the socket buffer is full,
+    // so a slow client slows the iteration down instead of making the server buffer the catalog.
+    @GetMapping(path = "/export", produces = NDJSON)
+    StreamingResponseBody exportProducts(){
+        return outputStream -> {
+            try (Stream<ProductResponseDto> products = productFacade.streamAll();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                Iterator<ProductResponseDto> iterator = products.iterator();
+                while (iterator.hasNext()) {
+                    exportWriter.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+    }
+
+    // A reconnecting EventSource sends the id of the last change it got; other clients may pass it as since.
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                             @RequestParam(required = false) Long since){
+        return productChangeFeed.subscribe(lastEventId != null ? lastEventId : since);
+    }
+
+    @GetMapping("/search")
+    ProductsResponseDto searchProducts(@RequestParam String q, @RequestParam(required = false) Integer limit){
+        return productFacade.search(q, limit == null ? DEFAULT_SEARCH_LIMIT : limit);
+    }
+
+    // The version is checked before anything is serialized; the ETag sent with a body is taken from that body.
     @GetMapping("/{id}")
-    ProductResponseDto getProduct(@PathVariable String id){
-        return productFacade.findById(id);
+    ResponseEntity<byte[]> getProduct(@PathVariable String id,
+                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                              String ifNoneMatch){
+        String currentETag = ETags.of(Long.toString(productFacade.getVersion(id)));
+        if(ETags.matches(ifNoneMatch, currentETag)){
+            return notModified(currentETag);
+        }
+        SerializedProduct product = productJsonCache.get(id, () -> serialize(productFacade.findById(id)));
+        return ResponseEntity.ok()
+                .eTag(ETags.of(Long.toString(product.getVersion())))
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(product.getJson());
+    }
+
+    @GetMapping("/cache/stats")
+    CacheStatsDto getCacheStats(){
+        CacheStats stats = productJsonCache.stats();
+        return new CacheStatsDto(productJsonCache.size(), stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                stats.hitRate());
     }
 
     @DeleteMapping("/{id}")
@@ -32,19 +125,103 @@ class ProductEndpoint {
         return productFacade.deleteById(id);
     }
 
+    // Without If-Match the update is applied on top of whatever is current; with it, only on top of that version.
     @PutMapping("/{id}")
-    ProductResponseDto updateProduct(@PathVariable String id, @RequestBody ProductRequestDto productRequestDto){
-        return  productFacade.update(id, productRequestDto);
+    ResponseEntity<ProductResponseDto> updateProduct(@PathVariable String id,
+                                                     @RequestBody ProductRequestDto productRequestDto,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                             String ifMatch){
+        ProductResponseDto product = ifMatch == null || ifMatch.trim().equals("*")
+                ? productFacade.update(id, productRequestDto)
+                : productFacade.update(id, productRequestDto, ETags.parseVersion(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(Long.toString(product.getVersion()))).body(product);
     }
 
+    // One handler for every listing filter, so combined filters are rejected instead of matching several mappings.
     @GetMapping
-    ProductsResponseDto getAllProducts(){
-        return productFacade.getAll();
+    ResponseEntity<ProductsResponseDto> getProducts(@RequestParam(required = false) String tag,
+                                                    @RequestParam(required = false) String tags,
+                                                    @RequestParam(required = false) String match,
+                                                    @RequestParam(required = false) String currency,
+                                                    @RequestParam(required = false) String minPrice,
+                                                    @RequestParam(required = false) String maxPrice,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    @RequestParam(required = false) String after,
+                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                            required = false) String ifNoneMatch){
+        int filters = (tag != null ? 1 : 0) + (tags != null ? 1 : 0) + (currency != null ? 1 : 0);
+        if(filters > 1) throw new ConflictingFiltersException();
+        if(tag != null) return getProductsWithTag(tag, limit, after, ifNoneMatch);
+        if(tags != null) return getProductsWithTags(tags, match, limit, after, ifNoneMatch);
+        if(currency != null) return ResponseEntity.ok(productFacade.findByPriceRange(currency, minPrice, maxPrice));
+        return getAllProducts(limit, after, ifNoneMatch);
+    }
+
+    // Facets change exactly when the listing they describe changes, so they share its ETag scheme.
+    @GetMapping("/facets/tags")
+    ResponseEntity<TagFacetsResponseDto> getTagFacets(@RequestParam(required = false) String tag,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                              required = false) String ifNoneMatch){
+        String eTag = tag == null
+                ? ETags.of(listingEpoch, "facets", Long.toString(productFacade.getListingVersion()))
+                : ETags.of(listingEpoch, "facets", "tag", Long.toString(productFacade.getListingVersion(tag)));
+        if(ETags.matches(ifNoneMatch, eTag)){
+            return notModified(eTag);
+        }
+        return ResponseEntity.ok().eTag(eTag)
+                .body(productFacade.getTagFacets(tag, limit == null ? DEFAULT_FACET_LIMIT : limit));
+    }
+
+    @ExceptionHandler(InvalidProductException.class)
+    ResponseEntity<ValidationErrorResponseDto> handleInvalidProduct(InvalidProductException exception){
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ValidationErrorResponseDto(exception.getViolations()));
+    }
+
+    // Listings are versioned by modification counters read before the listing, never by hashing the payload.
+    private ResponseEntity<ProductsResponseDto> getAllProducts(Integer limit, String after, String ifNoneMatch){
+        String eTag = ETags.of(listingEpoch, Long.toString(productFacade.getListingVersion()));
+        if(ETags.matches(ifNoneMatch, eTag)){
+            return notModified(eTag);
+        }
+        ProductsResponseDto products = limit == null && after == null ? productFacade.getAll()
+                : productFacade.getPage(after, limit == null ? DEFAULT_PAGE_LIMIT : limit);
+        return ResponseEntity.ok().eTag(eTag).body(products);
+    }
+
+    private ResponseEntity<ProductsResponseDto> getProductsWithTag(String tag, Integer limit, String after,
+                                                                   String ifNoneMatch){
+        String eTag = ETags.of(listingEpoch, "tag", Long.toString(productFacade.getListingVersion(tag)));
+        if(ETags.matches(ifNoneMatch, eTag)){
+            return notModified(eTag);
+        }
+        ProductsResponseDto products = limit == null && after == null ? productFacade.findByTag(tag)
+                : productFacade.findByTag(tag, after, limit == null ? DEFAULT_PAGE_LIMIT : limit);
+        return ResponseEntity.ok().eTag(eTag).body(products);
+    }
+
+    // Any product may start or stop matching a tag query, so it is versioned like the whole catalog.
+    private ResponseEntity<ProductsResponseDto> getProductsWithTags(String tags, String match, Integer limit,
+                                                                    String after, String ifNoneMatch){
+        String eTag = ETags.of(listingEpoch, Long.toString(productFacade.getListingVersion()));
+        if(ETags.matches(ifNoneMatch, eTag)){
+            return notModified(eTag);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(productFacade.findByTags(tags, match, after,
+                limit == null ? DEFAULT_PAGE_LIMIT : limit));
+    }
+
+    private SerializedProduct serialize(ProductResponseDto product){
+        try {
+            return new SerializedProduct(product.getVersion(), objectMapper.writeValueAsBytes(product));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    @GetMapping(params = "tag")
-    ProductsResponseDto getProductsWithTag(@RequestParam String tag){
-        return productFacade.findByTag(tag);
+    private static <T> ResponseEntity<T> notModified(String eTag){
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
     }
 
 }
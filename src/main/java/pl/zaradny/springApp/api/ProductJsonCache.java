@@ -0,0 +1,93 @@
+package pl.zaradny.springApp.api;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import pl.zaradny.springApp.domain.ProductChange;
+import pl.zaradny.springApp.domain.ProductChangeListener;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Serialized JSON of single products, bounded by total size in bytes and invalidated on every write to the product.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class ProductJsonCache implements ProductChangeListener {
+
+    private static final int STRIPES = 1024;
+
+    private final Cache<String, SerializedProduct> cache;
+    // Bumped on every write to an id in the stripe, so a read that raced with a write does not cache what it saw.
+    private final AtomicLongArray writeStamps = new AtomicLongArray(STRIPES);
+
+    ProductJsonCache(@Value("${products.cache.max-bytes:67108864}") long maxBytes) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String id, SerializedProduct product) -> product.json.length)
+                .recordStats()
+                .build();
+    }
+
+    SerializedProduct get(String id, Supplier<SerializedProduct> loader) {
+        SerializedProduct product = cache.getIfPresent(id);
+        if (product != null) {
+            return product;
+        }
+        int stripe = stripe(id);
+        long stamp = writeStamps.get(stripe);
+        product = loader.get();
+        if (writeStamps.get(stripe) == stamp) {
+            cache.put(id, product);
+            // A write that bumped the stamp after the check may have invalidated before the put landed.
+            if (writeStamps.get(stripe) != stamp) {
+                cache.invalidate(id);
+            }
+        }
+        return product;
+    }
+
+    @Override
+    public void productChanged(ProductChange change) {
+        writeStamps.incrementAndGet(stripe(change.getProductId()));
+        cache.invalidate(change.getProductId());
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    private static int stripe(String id) {
+        return (id.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+
+    /**
+     * JSON of one product together with the version it was serialized from, so the ETag always matches the body.
+     */
+    static final class SerializedProduct {
+
+        private final long version;
+        private final byte[] json;
+
+        SerializedProduct(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        long getVersion() {
+            return version;
+        }
+
+        byte[] getJson() {
+            return json;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package pl.zaradny.springApp.api;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pl.zaradny.springApp.domain.ProductRequestDto;
+import pl.zaradny.springApp.domain.ProductResponseDto;
+import pl.zaradny.springApp.domain.ProductsResponseDto;
+import pl.zaradny.springApp.domain.ReactiveProductFacade;
+import pl.zaradny.springApp.domain.ValidationErrorResponseDto;
+import pl.zaradny.springApp.exceptions.BadPageLimitException;
+import pl.zaradny.springApp.exceptions.InvalidProductException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * The product API on the reactive stack, active when the application runs with
+ * {@code spring.main.web-application-type=reactive}. Requests and responses match {@link ProductEndpoint} for the
+ * operations both offer, including ETags with {@code If-None-Match} on reads and {@code If-Match} on updates;
+ * listings are additionally streamed one product per line under {@code /products/stream}.
+ */
+@RestController
+@RequestMapping("/products")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveProductEndpoint {
+
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+
+    private final ReactiveProductFacade productFacade;
+    // Listing counters start from zero on every start, so their ETags also carry the start time.
+    private final String listingEpoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    ReactiveProductEndpoint(ReactiveProductFacade productFacade){
+        this.productFacade = productFacade;
+    }
+
+    @PostMapping
+    Mono<ProductResponseDto> createProduct(@RequestBody ProductRequestDto productRequestDto){
+        return productFacade.create(productRequestDto);
+    }
+
+    // The projection is built with the product, so comparing its version before answering costs no extra mapping.
+    @GetMapping("/{id}")
+    Mono<ResponseEntity<ProductResponseDto>> getProduct(@PathVariable String id,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                                required = false) String ifNoneMatch){
+        return productFacade.findById(id).map(product -> {
+            String eTag = ETags.of(Long.toString(product.getVersion()));
+            return ETags.matches(ifNoneMatch, eTag) ? notModified(eTag) : ResponseEntity.ok().eTag(eTag).body(product);
+        });
+    }
+
+    @GetMapping("/search")
+    Mono<ProductsResponseDto> searchProducts(@RequestParam String q, @RequestParam(required = false) Integer limit){
+        return collect(productFacade.search(q, limit == null ? DEFAULT_SEARCH_LIMIT : limit));
+    }
+
+    @DeleteMapping("/{id}")
+    Mono<ResponseEntity<Void>> deleteProduct(@PathVariable String id){
+        return productFacade.deleteById(id).thenReturn(new ResponseEntity<>(HttpStatus.NO_CONTENT));
+    }
+
+    @PutMapping("/{id}")
+    Mono<ResponseEntity<ProductResponseDto>> updateProduct(@PathVariable String id,
+                                                           @RequestBody ProductRequestDto productRequestDto,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH,
+                                                                   required = false) String ifMatch){
+        Mono<ProductResponseDto> product = ifMatch == null || ifMatch.trim().equals("*")
+                ? productFacade.update(id, productRequestDto)
+                : productFacade.update(id, productRequestDto, ETags.parseVersion(ifMatch));
+        return product.map(updated -> ResponseEntity.ok().eTag(ETags.of(Long.toString(updated.getVersion())))
+                .body(updated));
+    }
+
+    // Listings are versioned by modification counters read before the listing, never by hashing the payload.
+    @GetMapping
+    Mono<ResponseEntity<ProductsResponseDto>> getAllProducts(@RequestParam(required = false) Integer limit,
+                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                                     required = false) String ifNoneMatch){
+        return Mono.defer(() -> versioned(ETags.of(listingEpoch, Long.toString(productFacade.getListingVersion())),
+                ifNoneMatch, () -> limited(productFacade.getAll(), limit)));
+    }
+
+    @GetMapping(params = "tag")
+    Mono<ResponseEntity<ProductsResponseDto>> getProductsWithTag(@RequestParam String tag,
+                                                                 @RequestParam(required = false) Integer limit,
+                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                                         required = false) String ifNoneMatch){
+        return Mono.defer(() -> versioned(ETags.of(listingEpoch, "tag",
+                Long.toString(productFacade.getListingVersion(tag))), ifNoneMatch,
+                () -> limited(productFacade.findByTag(tag), limit)));
+    }
+
+    // The store is read a page at a time as the connection drains, so a slow client never makes the server buffer.
+    @GetMapping(path = "/stream", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    Flux<ProductResponseDto> streamProducts(@RequestParam(required = false) String tag){
+        return tag == null ? productFacade.getAll() : productFacade.findByTag(tag);
+    }
+
+    @ExceptionHandler(InvalidProductException.class)
+    ResponseEntity<ValidationErrorResponseDto> handleInvalidProduct(InvalidProductException exception){
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ValidationErrorResponseDto(exception.getViolations()));
+    }
+
+    private static Flux<ProductResponseDto> limited(Flux<ProductResponseDto> products, Integer limit){
+        if(limit == null) return products;
+        if(limit < 1) return Flux.error(new BadPageLimitException());
+        return products.take(limit);
+    }
+
+    private static Mono<ResponseEntity<ProductsResponseDto>> versioned(String eTag, String ifNoneMatch,
+                                                                      Supplier<Flux<ProductResponseDto>> products){
+        if(ETags.matches(ifNoneMatch, eTag)){
+            return Mono.just(notModified(eTag));
+        }
+        return collect(products.get()).map(listing -> ResponseEntity.ok().eTag(eTag).body(listing));
+    }
+
+    private static <T> ResponseEntity<T> notModified(String eTag){
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+    }
+
+    private static Mono<ProductsResponseDto> collect(Flux<ProductResponseDto> products){
+        return products.collectList().map(ProductsResponseDto::new);
+    }
+}
@@ -0,0 +1,55 @@
+package pl.zaradny.springApp.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchOperationDto {
+
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+
+    private final String op;
+    private final String id;
+    private final ProductRequestDto product;
+
+    @JsonCreator
+    public BatchOperationDto(@JsonProperty("op") String op,
+                             @JsonProperty("id") String id,
+                             @JsonProperty("product") ProductRequestDto product) {
+        this.op = op;
+        this.id = id;
+        this.product = product;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ProductRequestDto getProduct() {
+        return product;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchOperationDto that = (BatchOperationDto) o;
+        return Objects.equals(op, that.op) &&
+                Objects.equals(id, that.id) &&
+                Objects.equals(product, that.product);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(op, id, product);
+    }
+}
@@ -0,0 +1,36 @@
+package pl.zaradny.springApp.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Objects;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchRequestDto {
+
+    private final List<BatchOperationDto> operations;
+
+    @JsonCreator
+    public BatchRequestDto(@JsonProperty("operations") List<BatchOperationDto> operations) {
+        this.operations = operations;
+    }
+
+    public List<BatchOperationDto> getOperations() {
+        return operations;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchRequestDto that = (BatchRequestDto) o;
+        return Objects.equals(operations, that.operations);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(operations);
+    }
+}
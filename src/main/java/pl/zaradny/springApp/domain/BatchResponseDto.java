@@ -0,0 +1,34 @@
+package pl.zaradny.springApp.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Objects;
+
+public class BatchResponseDto {
+
+    private final List<BatchResultDto> results;
+
+    @JsonCreator
+    public BatchResponseDto(@JsonProperty("results") List<BatchResultDto> results) {
+        this.results = results;
+    }
+
+    public List<BatchResultDto> getResults() {
+        return results;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchResponseDto that = (BatchResponseDto) o;
+        return Objects.equals(results, that.results);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(results);
+    }
+}
@@ -0,0 +1,69 @@
+package pl.zaradny.springApp.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResultDto {
+
+    private final int status;
+    private final String id;
+    private final ProductResponseDto product;
+    private final String error;
+
+    @JsonCreator
+    public BatchResultDto(@JsonProperty("status") int status,
+                          @JsonProperty("id") String id,
+                          @JsonProperty("product") ProductResponseDto product,
+                          @JsonProperty("error") String error) {
+        this.status = status;
+        this.id = id;
+        this.product = product;
+        this.error = error;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ProductResponseDto getProduct() {
+        return product;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchResultDto that = (BatchResultDto) o;
+        return status == that.status &&
+                Objects.equals(id, that.id) &&
+                Objects.equals(product, that.product) &&
+                Objects.equals(error, that.error);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(status, id, product, error);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResultDto{" +
+                "status=" + status +
+                ", id='" + id + '\'' +
+                ", product=" + product +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
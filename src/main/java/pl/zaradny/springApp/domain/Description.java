@@ -2,8 +2,12 @@ package pl.zaradny.springApp.domain;
 
 import pl.zaradny.springApp.exceptions.TooLongProductDescriptionException;
 
+import java.util.Objects;
+
 public final class Description {
 
+    public static final int MAX_LENGTH = 400;
+
     private final String text;
 
     private Description(String text) {
@@ -11,14 +15,31 @@ public final class Description {
     }
 
     public static Description build(String text){
-        if(text.length() > 400) {
+        if(!isValidText(text)) {
             throw new TooLongProductDescriptionException();
         }
         return new Description(text);
     }
 
+    public static boolean isValidText(String text){
+        return text != null && text.length() <= MAX_LENGTH;
+    }
+
     public String getText() {
         return text;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Description that = (Description) o;
+        return Objects.equals(text, that.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(text);
+    }
 }
 
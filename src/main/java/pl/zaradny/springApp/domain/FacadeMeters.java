@@ -0,0 +1,52 @@
+package pl.zaradny.springApp.domain;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import pl.zaradny.springApp.exceptions.InvalidProductException;
+
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+/**
+ * Meters shared by the metered facades: a timer per operation and outcome, and a counter of rejected request fields.
+ */
+final class FacadeMeters {
+
+    private static final String VIOLATIONS = "products.validation.violations";
+    private static final Pattern LIST_INDEX = Pattern.compile("\\[\\d+]");
+
+    private final MeterRegistry meterRegistry;
+    private final String timerName;
+    private final String timerDescription;
+
+    FacadeMeters(MeterRegistry meterRegistry, String timerName, String timerDescription) {
+        this.meterRegistry = meterRegistry;
+        this.timerName = timerName;
+        this.timerDescription = timerDescription;
+    }
+
+    Timer timer(String operation, String exception) {
+        return Timer.builder(timerName)
+                .description(timerDescription)
+                .tags("operation", operation, "exception", exception)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(500))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    // Violations are counted per field, so a client sending one bad field again and again is easy to tell apart.
+    // List indexes are dropped from the tag: tags[0].name and tags[999].name are the same field to an operator,
+    // and keeping them apart would let a single request register a counter per element.
+    void countViolations(Throwable exception) {
+        if(!(exception instanceof InvalidProductException)) return;
+        for (ViolationDto violation : ((InvalidProductException) exception).getViolations()) {
+            Counter.builder(VIOLATIONS)
+                    .description("Rejected product request fields")
+                    .tag("field", LIST_INDEX.matcher(violation.getField()).replaceAll(""))
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package pl.zaradny.springApp.domain;
+
+/**
+ * Source of ids for new products. Implementations are called concurrently from request threads.
+ */
+public interface IdGenerator {
+
+    String nextId();
+}
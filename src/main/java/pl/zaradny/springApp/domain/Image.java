@@ -1,41 +1,145 @@
 package pl.zaradny.springApp.domain;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import pl.zaradny.springApp.exceptions.BadImageURLException;
 
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.Objects;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Images are compared by a canonical form of their URI, computed once when the image is built: scheme and host in
+ * lower case, default ports dropped and dot segments removed. Unlike {@link URL#equals(Object)}, comparing or
+ * hashing an image never resolves its host, so {@code localhost} and {@code 127.0.0.1} are different images.
+ * Images built from a recently seen URL are taken from a small cache instead of being parsed again.
+ */
 public final class Image {
 
-    private final URL url;
+    private static final Set<String> SUPPORTED_PROTOCOLS = Set.of("http", "https", "ftp", "file", "jar");
+    private static final Map<String, Integer> DEFAULT_PORTS = Map.of("http", 80, "https", 443, "ftp", 21);
+    private static final Cache<String, Image> PARSED_IMAGES = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .build();
 
-    private Image(URL url) {
+    private final String url;
+    private final URI uri;
+    private final String canonicalUri;
+    private final int hash;
+
+    private Image(String url, URI uri) {
         this.url = url;
+        this.uri = uri;
+        this.canonicalUri = canonicalize(uri);
+        this.hash = canonicalUri.hashCode();
     }
 
     public static Image build(String url){
-        try {
-            return new Image(new URL(url));
-        } catch (MalformedURLException e) {
-            throw new BadImageURLException();
+        return tryBuild(url).orElseThrow(BadImageURLException::new);
+    }
+
+    /**
+     * Parses the URL as fully as {@link #build(String)} does but reports a malformed one, whether in its protocol,
+     * host or port, as an empty result instead of throwing, so a validator can use the image it gets back.
+     */
+    public static Optional<Image> tryBuild(String url){
+        if(url == null){
+            return Optional.empty();
+        }
+        Image image = PARSED_IMAGES.getIfPresent(url);
+        if(image == null){
+            URI uri = parse(url);
+            if(uri == null){
+                return Optional.empty();
+            }
+            image = new Image(url, uri);
+            PARSED_IMAGES.put(url, image);
         }
+        return Optional.of(image);
     }
 
-    public URL getUrl() {
+    /**
+     * The URL exactly as it was given.
+     */
+    public String getUrl() {
         return url;
     }
 
+    public URI getUri() {
+        return uri;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Image image = (Image) o;
-        return Objects.equals(url, image.url);
+        return hash == image.hash && canonicalUri.equals(image.canonicalUri);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(url);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    // URL accepts characters, such as spaces, that URI does not; those are quoted from the parts URL found. Returns
+    // null for a URL that neither accepts.
+    private static URI parse(String spec){
+        try {
+            URL url = new URL(spec);
+            try {
+                return new URI(spec);
+            } catch (URISyntaxException e) {
+                String host = url.getHost();
+                return new URI(url.getProtocol(), url.getUserInfo(), host == null || host.isEmpty() ? null : host,
+                        url.getPort(), url.getPath(), url.getQuery(), url.getRef());
+            }
+        } catch (MalformedURLException | URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static String canonicalize(URI uri){
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder canonical = new StringBuilder(scheme).append(':');
+        if (uri.isOpaque()) {
+            canonical.append(uri.getRawSchemeSpecificPart());
+        } else {
+            URI normalized = uri.normalize();
+            if (normalized.getRawAuthority() != null) {
+                canonical.append("//");
+                if (normalized.getHost() == null) {
+                    canonical.append(normalized.getRawAuthority());
+                } else {
+                    if (normalized.getRawUserInfo() != null) {
+                        canonical.append(normalized.getRawUserInfo()).append('@');
+                    }
+                    canonical.append(normalized.getHost().toLowerCase(Locale.ROOT));
+                    int port = normalized.getPort();
+                    if (port != -1 && !Integer.valueOf(port).equals(DEFAULT_PORTS.get(scheme))) {
+                        canonical.append(':').append(port);
+                    }
+                }
+            }
+            String path = normalized.getRawPath();
+            canonical.append(path.isEmpty() && normalized.getRawAuthority() != null ? "/" : path);
+            if (normalized.getRawQuery() != null) {
+                canonical.append('?').append(normalized.getRawQuery());
+            }
+        }
+        if (uri.getRawFragment() != null) {
+            canonical.append('#').append(uri.getRawFragment());
+        }
+        return canonical.toString();
     }
 }
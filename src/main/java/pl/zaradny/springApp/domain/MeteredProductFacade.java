@@ -0,0 +1,177 @@
+package pl.zaradny.springApp.domain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Times every facade operation into {@code products.facade}, tagged with the operation and with the simple name of
+ * the exception it failed with, or {@code none}. Not-found and validation failure rates are read from that tag.
+ * Timers are looked up once, so a call costs two clock reads and a histogram bucket increment.
+ */
+@Primary
+@Component
+class MeteredProductFacade implements ProductFacade {
+
+    private final ProductFacade delegate;
+    private final FacadeMeters meters;
+    private final OperationTimer findById;
+    private final OperationTimer getVersion;
+    private final OperationTimer getListingVersion;
+    private final OperationTimer create;
+    private final OperationTimer update;
+    private final OperationTimer deleteById;
+    private final OperationTimer applyBatch;
+    private final OperationTimer getAll;
+    private final OperationTimer getPage;
+    private final OperationTimer findByTag;
+    private final OperationTimer findByTags;
+    private final OperationTimer findByPriceRange;
+    private final OperationTimer search;
+    private final OperationTimer getTagFacets;
+
+    MeteredProductFacade(ProductFacadeImpl delegate, MeterRegistry meterRegistry){
+        this.delegate = delegate;
+        this.meters = new FacadeMeters(meterRegistry, "products.facade", "Product facade operations");
+        this.findById = new OperationTimer("findById");
+        this.getVersion = new OperationTimer("getVersion");
+        this.getListingVersion = new OperationTimer("getListingVersion");
+        this.create = new OperationTimer("create");
+        this.update = new OperationTimer("update");
+        this.deleteById = new OperationTimer("deleteById");
+        this.applyBatch = new OperationTimer("applyBatch");
+        this.getAll = new OperationTimer("getAll");
+        this.getPage = new OperationTimer("getPage");
+        this.findByTag = new OperationTimer("findByTag");
+        this.findByTags = new OperationTimer("findByTags");
+        this.findByPriceRange = new OperationTimer("findByPriceRange");
+        this.search = new OperationTimer("search");
+        this.getTagFacets = new OperationTimer("getTagFacets");
+    }
+
+    @Override
+    public ProductResponseDto findById(String id) {
+        return findById.record(() -> delegate.findById(id));
+    }
+
+    @Override
+    public long getVersion(String id) {
+        return getVersion.record(() -> delegate.getVersion(id));
+    }
+
+    @Override
+    public long getListingVersion() {
+        return getListingVersion.record(delegate::getListingVersion);
+    }
+
+    @Override
+    public long getListingVersion(String tag) {
+        return getListingVersion.record(() -> delegate.getListingVersion(tag));
+    }
+
+    @Override
+    public ProductResponseDto create(ProductRequestDto productRequest) {
+        return create.record(() -> delegate.create(productRequest));
+    }
+
+    @Override
+    public ProductResponseDto update(String id, ProductRequestDto productRequestDto) {
+        return update.record(() -> delegate.update(id, productRequestDto));
+    }
+
+    @Override
+    public ProductResponseDto update(String id, ProductRequestDto productRequestDto, long expectedVersion) {
+        return update.record(() -> delegate.update(id, productRequestDto, expectedVersion));
+    }
+
+    @Override
+    public ResponseEntity<Void> deleteById(String id) {
+        return deleteById.record(() -> delegate.deleteById(id));
+    }
+
+    @Override
+    public BatchResponseDto applyBatch(BatchRequestDto batchRequest) {
+        return applyBatch.record(() -> delegate.applyBatch(batchRequest));
+    }
+
+    @Override
+    public ProductsResponseDto getAll() {
+        return getAll.record(delegate::getAll);
+    }
+
+    // The stream does its work while the response is written, long after this call returns, so it is not timed.
+    @Override
+    public Stream<ProductResponseDto> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public ProductsResponseDto getPage(String cursor, int limit) {
+        return getPage.record(() -> delegate.getPage(cursor, limit));
+    }
+
+    @Override
+    public ProductsResponseDto findByTag(String tag) {
+        return findByTag.record(() -> delegate.findByTag(tag));
+    }
+
+    @Override
+    public ProductsResponseDto findByTag(String tag, String cursor, int limit) {
+        return findByTag.record(() -> delegate.findByTag(tag, cursor, limit));
+    }
+
+    @Override
+    public ProductsResponseDto findByTags(String tags, String match, String cursor, int limit) {
+        return findByTags.record(() -> delegate.findByTags(tags, match, cursor, limit));
+    }
+
+    @Override
+    public ProductsResponseDto findByPriceRange(String currency, String minPrice, String maxPrice) {
+        return findByPriceRange.record(() -> delegate.findByPriceRange(currency, minPrice, maxPrice));
+    }
+
+    @Override
+    public ProductsResponseDto search(String query, int limit) {
+        return search.record(() -> delegate.search(query, limit));
+    }
+
+    @Override
+    public TagFacetsResponseDto getTagFacets(String tag, int limit) {
+        return getTagFacets.record(() -> delegate.getTagFacets(tag, limit));
+    }
+
+    private final class OperationTimer {
+
+        private final String operation;
+        private final Timer succeeded;
+        // Failures are rare and their exception types few, so their timers are registered on first use.
+        private final ConcurrentMap<Class<?>, Timer> failed = new ConcurrentHashMap<>();
+
+        private OperationTimer(String operation) {
+            this.operation = operation;
+            this.succeeded = meters.timer(operation, "none");
+        }
+
+        private <T> T record(Supplier<T> call) {
+            long start = System.nanoTime();
+            try {
+                T result = call.get();
+                succeeded.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return result;
+            }catch (RuntimeException e) {
+                failed.computeIfAbsent(e.getClass(), type -> meters.timer(operation, type.getSimpleName()))
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                meters.countViolations(e);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package pl.zaradny.springApp.domain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times reactive facade operations into {@code products.reactive.facade}, tagged like {@link MeteredProductFacade}.
+ * A call is timed from subscription to its completion or error signal; a cancelled call is not recorded.
+ */
+@Primary
+@Component
+class MeteredReactiveProductFacade implements ReactiveProductFacade {
+
+    private final ReactiveProductFacade delegate;
+    private final FacadeMeters meters;
+    private final OperationTimer findById;
+    private final OperationTimer create;
+    private final OperationTimer update;
+    private final OperationTimer deleteById;
+    private final OperationTimer search;
+
+    MeteredReactiveProductFacade(ReactiveProductFacadeImpl delegate, MeterRegistry meterRegistry){
+        this.delegate = delegate;
+        this.meters = new FacadeMeters(meterRegistry, "products.reactive.facade",
+                "Reactive product facade operations");
+        this.findById = new OperationTimer("findById");
+        this.create = new OperationTimer("create");
+        this.update = new OperationTimer("update");
+        this.deleteById = new OperationTimer("deleteById");
+        this.search = new OperationTimer("search");
+    }
+
+    @Override
+    public Mono<ProductResponseDto> findById(String id) {
+        return findById.record(() -> delegate.findById(id));
+    }
+
+    // Reading a modification counter takes nanoseconds and cannot fail, so it is not timed.
+    @Override
+    public long getListingVersion() {
+        return delegate.getListingVersion();
+    }
+
+    @Override
+    public long getListingVersion(String tag) {
+        return delegate.getListingVersion(tag);
+    }
+
+    @Override
+    public Mono<ProductResponseDto> create(ProductRequestDto productRequest) {
+        return create.record(() -> delegate.create(productRequest));
+    }
+
+    @Override
+    public Mono<ProductResponseDto> update(String id, ProductRequestDto productRequestDto) {
+        return update.record(() -> delegate.update(id, productRequestDto));
+    }
+
+    @Override
+    public Mono<ProductResponseDto> update(String id, ProductRequestDto productRequestDto, long expectedVersion) {
+        return update.record(() -> delegate.update(id, productRequestDto, expectedVersion));
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return deleteById.record(() -> delegate.deleteById(id));
+    }
+
+    // Listings are emitted at the pace the subscriber asks for them, so their duration says more about the client
+    // than about the facade; they are not timed, like streamAll of the blocking facade.
+    @Override
+    public Flux<ProductResponseDto> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public Flux<ProductResponseDto> findByTag(String tag) {
+        return delegate.findByTag(tag);
+    }
+
+    @Override
+    public Flux<ProductResponseDto> search(String query, int limit) {
+        return search.recordMany(() -> delegate.search(query, limit));
+    }
+
+    private final class OperationTimer {
+
+        private final String operation;
+        private final Timer succeeded;
+        // Failures are rare and their exception types few, so their timers are registered on first use.
+        private final ConcurrentMap<Class<?>, Timer> failed = new ConcurrentHashMap<>();
+
+        private OperationTimer(String operation) {
+            this.operation = operation;
+            this.succeeded = meters.timer(operation, "none");
+        }
+
+        private <T> Mono<T> record(Supplier<Mono<T>> call) {
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return call.get()
+                        .doOnSuccess(result -> succeeded.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                        .doOnError(error -> recordFailure(error, start));
+            });
+        }
+
+        private <T> Flux<T> recordMany(Supplier<Flux<T>> call) {
+            return Flux.defer(() -> {
+                long start = System.nanoTime();
+                return call.get()
+                        .doOnComplete(() -> succeeded.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                        .doOnError(error -> recordFailure(error, start));
+            });
+        }
+
+        private void recordFailure(Throwable error, long start) {
+            failed.computeIfAbsent(error.getClass(), type -> meters.timer(operation, type.getSimpleName()))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            meters.countViolations(error);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package pl.zaradny.springApp.domain;
+
+import pl.zaradny.springApp.exceptions.BadCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor handed out to clients; it wraps the id of the last product of a page.
+ */
+final class PageCursor {
+
+    private PageCursor() {}
+
+    static String encode(String lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decode(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadCursorException();
+        }
+    }
+}
@@ -6,9 +6,14 @@ import pl.zaradny.springApp.exceptions.BadPriceException;
 import java.math.BigDecimal;
 import java.util.Currency;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public final class Price {
 
+    private static final Set<String> CURRENCY_CODES = Currency.getAvailableCurrencies().stream()
+            .map(Currency::getCurrencyCode).collect(Collectors.toUnmodifiableSet());
+
     private final BigDecimal amount;
     private final Currency currency;
 
@@ -26,13 +31,44 @@ public final class Price {
     }
 
     public static Price build(String amount, String currency) {
-        try {
-            BigDecimal priceAmount = new BigDecimal(amount);
-            Currency priceCurrency = Currency.getInstance(currency);
-            return Price.build(priceAmount, priceCurrency);
-        }catch (IllegalArgumentException | NullPointerException e) {
+        if(!isValidAmount(amount) || !isValidCurrency(currency)){
             throw new BadPriceException();
         }
+        return Price.build(new BigDecimal(amount), Currency.getInstance(currency));
+    }
+
+    /**
+     * Whether {@link BigDecimal#BigDecimal(String)} accepts the text, checked without letting it throw:
+     * an optional sign, digits with an optional fraction, and an optional exponent of up to nine digits.
+     */
+    public static boolean isValidAmount(String amount) {
+        if(amount == null) return false;
+        int i = 0;
+        int length = amount.length();
+        if(i < length && (amount.charAt(i) == '+' || amount.charAt(i) == '-')) i++;
+        int digits = 0;
+        while(i < length && isDigit(amount.charAt(i))) { i++; digits++; }
+        if(i < length && amount.charAt(i) == '.') {
+            i++;
+            while(i < length && isDigit(amount.charAt(i))) { i++; digits++; }
+        }
+        if(digits == 0) return false;
+        if(i < length && (amount.charAt(i) == 'e' || amount.charAt(i) == 'E')) {
+            i++;
+            if(i < length && (amount.charAt(i) == '+' || amount.charAt(i) == '-')) i++;
+            int exponentDigits = 0;
+            while(i < length && isDigit(amount.charAt(i))) { i++; exponentDigits++; }
+            if(exponentDigits == 0 || exponentDigits > 9) return false;
+        }
+        return i == length;
+    }
+
+    public static boolean isValidCurrency(String currency) {
+        return currency != null && CURRENCY_CODES.contains(currency);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
     public BigDecimal getAmount() {
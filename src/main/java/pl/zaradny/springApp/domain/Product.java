@@ -1,7 +1,8 @@
 package pl.zaradny.springApp.domain;
 
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.base.Strings;
 import pl.zaradny.springApp.exceptions.*;
 
@@ -12,6 +13,9 @@ import java.util.Set;
 
 public final class Product {
 
+    // Most products carry one of relatively few tag combinations, so equal tag sets are shared between products.
+    private static final Interner<ImmutableSet<Tag>> SHARED_TAG_SETS = Interners.newWeakInterner();
+
     private final String id;
     private final String name;
     private final Price price;
@@ -19,16 +23,22 @@ public final class Product {
     private final Description description;
     private final LocalDateTime createdAt;
     private final Set<Tag> tags;
+    private final long version;
+    // Built with the product, so every read of an instance returns the same response. Stores that decode a new
+    // instance per read, like the off-heap one, map each read once, as part of decoding it.
+    private final ProductResponseDto projection;
 
     private Product(String id, String name, Price price, LocalDateTime createdAt, Image image, Description description,
-                    Set<Tag> tags) {
+                    Set<Tag> tags, long version) {
         this.id = id;
         this.name = name;
         this.price = price;
         this.image = image;
         this.description = description;
         this.createdAt = createdAt;
-        this.tags = ImmutableSet.copyOf(tags);
+        this.tags = SHARED_TAG_SETS.intern(ImmutableSet.copyOf(tags));
+        this.version = version;
+        this.projection = ProductProjection.of(this);
     }
 
     public String getId() {
@@ -59,6 +69,17 @@ public final class Product {
         return Optional.ofNullable(tags);
     }
 
+    /**
+     * Starts at 1 when the product is created and grows by one with every update.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    ProductResponseDto getProjection() {
+        return projection;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -70,12 +91,13 @@ public final class Product {
                 Objects.equals(image, product.image) &&
                 Objects.equals(description, product.description) &&
                 Objects.equals(createdAt, product.createdAt) &&
-                Objects.equals(tags, product.tags);
+                Objects.equals(tags, product.tags) &&
+                version == product.version;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, price, image, description, createdAt, tags);
+        return Objects.hash(id, name, price, image, description, createdAt, tags, version);
     }
 
     public static ProductBuilder build(){
@@ -91,6 +113,7 @@ public final class Product {
         private Image image;
         private Description description;
         private Set<Tag> tags;
+        private long version = 1;
 
         private ProductBuilder() {}
 
@@ -129,6 +152,11 @@ public final class Product {
             return this;
         }
 
+        public ProductBuilder withVersion(long version){
+            this.version = version;
+            return this;
+        }
+
         private void validateName() {
             if(Strings.isNullOrEmpty(this.name)){
                 throw new EmptyProductNameException();
@@ -136,25 +164,19 @@ public final class Product {
         }
 
         private void validatePrice(){
-            try {
-                Preconditions.checkNotNull(this.price);
-            }catch (NullPointerException e) {
+            if(this.price == null){
                 throw new ProductPriceIsNullException();
             }
         }
 
         private void validateCreatedAt(){
-            try{
-                Preconditions.checkNotNull(this.createdAt);
-            }catch (NullPointerException e) {
+            if(this.createdAt == null){
                 throw new EmptyCreatedAtException();
             }
         }
 
         private void validateId(){
-            try {
-                Preconditions.checkNotNull(this.id);
-            }catch (NullPointerException e) {
+            if(this.id == null){
                 throw new EmptyIdException();
             }
         }
@@ -165,7 +187,7 @@ public final class Product {
             validatePrice();
             validateName();
             return new Product(this.id, this.name, this.price, this.createdAt, this.image, this.description,
-                        this.tags);
+                        this.tags, this.version);
         }
     }
 }
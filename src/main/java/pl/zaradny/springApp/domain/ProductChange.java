@@ -0,0 +1,49 @@
+package pl.zaradny.springApp.domain;
+
+import java.util.Objects;
+
+/**
+ * A product write that has been applied to the repository.
+ */
+public final class ProductChange {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Type type;
+    private final String productId;
+
+    public ProductChange(Type type, String productId) {
+        this.type = type;
+        this.productId = productId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductChange that = (ProductChange) o;
+        return type == that.type &&
+                Objects.equals(productId, that.productId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, productId);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductChange{" +
+                "type=" + type +
+                ", productId='" + productId + '\'' +
+                '}';
+    }
+}
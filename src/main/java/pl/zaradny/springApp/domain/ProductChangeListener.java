@@ -0,0 +1,10 @@
+package pl.zaradny.springApp.domain;
+
+/**
+ * Notified by the product facade after each applied create, update or delete, on the writing thread.
+ * Implementations must be cheap and must not throw.
+ */
+public interface ProductChangeListener {
+
+    void productChanged(ProductChange change);
+}
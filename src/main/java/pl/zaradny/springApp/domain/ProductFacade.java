@@ -2,17 +2,67 @@ package pl.zaradny.springApp.domain;
 
 import org.springframework.http.ResponseEntity;
 
+import java.util.stream.Stream;
+
 public interface ProductFacade {
 
     ProductResponseDto findById(String id);
 
+    /**
+     * Current version of the product, looked up without mapping it to a response.
+     */
+    long getVersion(String id);
+
+    /**
+     * Changes whenever any product is created, updated or deleted.
+     */
+    long getListingVersion();
+
+    /**
+     * Changes whenever a product carrying the tag, before or after the write, is created, updated or deleted.
+     */
+    long getListingVersion(String tag);
+
     ProductResponseDto create(ProductRequestDto productRequest);
 
     ProductResponseDto update(String id, ProductRequestDto productRequestDto);
 
+    /**
+     * Updates the product only if its current version is {@code expectedVersion}, failing with
+     * {@link pl.zaradny.springApp.exceptions.ProductVersionConflictException} otherwise.
+     */
+    ProductResponseDto update(String id, ProductRequestDto productRequestDto, long expectedVersion);
+
     ResponseEntity<Void> deleteById(String id);
 
+    BatchResponseDto applyBatch(BatchRequestDto batchRequest);
+
     ProductsResponseDto getAll();
 
+    /**
+     * Lazily maps every product in id order; nothing is materialized up front, so callers can stream the catalog.
+     */
+    Stream<ProductResponseDto> streamAll();
+
+    ProductsResponseDto getPage(String cursor, int limit);
+
     ProductsResponseDto findByTag(String tag);
+
+    ProductsResponseDto findByTag(String tag, String cursor, int limit);
+
+    /**
+     * Pages through products matching comma separated tags, all or any of them as {@code match} says; tags
+     * prefixed with {@code !} must not be carried.
+     */
+    ProductsResponseDto findByTags(String tags, String match, String cursor, int limit);
+
+    ProductsResponseDto findByPriceRange(String currency, String minPrice, String maxPrice);
+
+    ProductsResponseDto search(String query, int limit);
+
+    /**
+     * Up to {@code limit} tags with the number of products carrying each, most common first. With a tag, only
+     * products carrying it are counted and the tag itself is left out.
+     */
+    TagFacetsResponseDto getTagFacets(String tag, int limit);
 }
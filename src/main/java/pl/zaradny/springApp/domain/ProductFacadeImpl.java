@@ -1,156 +1,316 @@
 package pl.zaradny.springApp.domain;
 
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import pl.zaradny.springApp.exceptions.*;
 import pl.zaradny.springApp.infrastructure.ProductRepository;
+import pl.zaradny.springApp.infrastructure.ProductWrite;
 
-import java.time.LocalDateTime;
+import java.math.BigDecimal;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Component
 class ProductFacadeImpl implements ProductFacade {
 
+    private static final int MAX_PAGE_LIMIT = 1000;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_UPDATE_ATTEMPTS = 16;
+
     private final ProductRepository productRepository;
+    private final List<ProductChangeListener> changeListeners;
+    private final ProductRequestMapper requestMapper;
 
-    ProductFacadeImpl(ProductRepository productRepository){
+    ProductFacadeImpl(ProductRepository productRepository, List<ProductChangeListener> changeListeners,
+                      IdGenerator idGenerator){
         this.productRepository = productRepository;
+        this.changeListeners = List.copyOf(changeListeners);
+        this.requestMapper = new ProductRequestMapper(idGenerator);
     }
 
     @Override
     public ProductResponseDto findById(String id){
-        Product product = productRepository.findById(id);
-        PriceDto priceDto = createPriceDtoToResponse(product.getPrice());
-        ImageDto imageDto = createImageDtoToResponse(product.getImage().orElse(null));
-        DescriptionDto descriptionDto = createDescriptionDtoToResponse(product.getDescription().orElse(null));
-        Set<TagDto> tagsDto = createTagsDtoToResponse(product.getTags().orElse(null));
-        return new ProductResponseDto(product.getId(), product.getName(), priceDto, imageDto, descriptionDto, tagsDto);
+        return createProductResponse(productRepository.findById(id));
+    }
+
+    @Override
+    public long getVersion(String id) {
+        return productRepository.findById(id).getVersion();
+    }
+
+    @Override
+    public long getListingVersion() {
+        return productRepository.modificationCount();
+    }
+
+    @Override
+    public long getListingVersion(String tag) {
+        return productRepository.modificationCount(Tag.build(tag));
     }
 
     @Override
     public ProductResponseDto create(ProductRequestDto productRequest) {
-        Price price = getPriceFromRequest(productRequest);
-        Image image = getImageFromRequest(productRequest);
-        Description description = getDescriptionFromRequest(productRequest);
-        Set<Tag> tags = getTagsFromRequest(productRequest);
-        Product product = Product.build()
-                .withId(UUID.randomUUID().toString())
-                .withName(productRequest.getName())
-                .withPrice(price)
-                .withCreatedAt(LocalDateTime.now())
-                .withDescription(description)
-                .withImage(image)
-                .withTags(tags)
-                .build();
+        Product product = requestMapper.createProduct(productRequest);
+        ProductResponseDto response = createProductResponse(product);
         productRepository.save(product);
-        return new ProductResponseDto(product.getId(), product.getName(), createPriceDtoToResponse(price),
-                createImageDtoToResponse(image), createDescriptionDtoToResponse(description),
-                createTagsDtoToResponse(tags));
+        publishChange(ProductChange.Type.CREATED, product.getId());
+        return response;
     }
 
     @Override
     public ResponseEntity<Void> deleteById(String id) {
         productRepository.deleteById(id);
+        publishChange(ProductChange.Type.DELETED, id);
         return  new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
     @Override
     public ProductsResponseDto getAll() {
-        List<Product> allProducts = productRepository.getAll();
-        List<ProductResponseDto> response = allProducts.stream().map(product -> new ProductResponseDto(product.getId(),
-                 product.getName(), createPriceDtoToResponse(product.getPrice()),
-                 createImageDtoToResponse(product.getImage().orElse(null)),
-                 createDescriptionDtoToResponse(product.getDescription().orElse(null)),
-                 createTagsDtoToResponse(product.getTags().orElse(null))))
-                .sorted(Comparator.comparing(ProductResponseDto::getId)).collect(Collectors.toList());
+        List<ProductResponseDto> response = productRepository.getAll().map(this::createProductResponse)
+                .collect(Collectors.toList());
 
         return new ProductsResponseDto(response);
     }
 
+    // Without an expected version the last write wins: a lost compare-and-set just re-reads and tries again,
+    // until a product contended by that many writers is given up on rather than holding the request thread.
     @Override
     public ProductResponseDto update(String id, ProductRequestDto productRequestDto) {
+        for(int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++){
+            Product oldProduct = productRepository.findById(id);
+            Product newProduct = requestMapper.updateProduct(oldProduct, productRequestDto);
+            try {
+                return applyUpdate(oldProduct, newProduct);
+            }catch (ProductVersionConflictException e) {
+                // another update won the race; retry on top of it
+            }
+        }
+        throw new ProductUpdateContendedException();
+    }
+
+    @Override
+    public ProductResponseDto update(String id, ProductRequestDto productRequestDto, long expectedVersion) {
         Product oldProduct = productRepository.findById(id);
-        Product newProduct = Product.build()
-                .withId(id)
-                .withName(productRequestDto.getName())
-                .withPrice(getPriceFromRequest(productRequestDto))
-                .withCreatedAt(oldProduct.getCreatedAt())
-                .withImage(getImageFromRequest(productRequestDto))
-                .withDescription(getDescriptionFromRequest(productRequestDto))
-                .withTags(getTagsFromRequest(productRequestDto))
-                .build();
-        Product updatedProduct = productRepository.update(oldProduct, newProduct);
-        return new ProductResponseDto(updatedProduct.getId(), updatedProduct.getName(),
-                createPriceDtoToResponse(updatedProduct.getPrice()),
-                createImageDtoToResponse(updatedProduct.getImage().orElse(null)),
-                createDescriptionDtoToResponse(updatedProduct.getDescription().orElse(null)),
-                createTagsDtoToResponse(updatedProduct.getTags().orElse(null)));
+        if(oldProduct.getVersion() != expectedVersion) throw new ProductVersionConflictException();
+        return applyUpdate(oldProduct, requestMapper.updateProduct(oldProduct, productRequestDto));
+    }
+
+    // Operations are validated in parallel against the state before the batch, then written in one repository call.
+    @Override
+    public BatchResponseDto applyBatch(BatchRequestDto batchRequest) {
+        List<BatchOperationDto> operations = batchRequest.getOperations() == null ? Collections.emptyList()
+                : batchRequest.getOperations();
+        if(operations.size() > MAX_BATCH_SIZE) throw new TooLargeBatchException();
+        List<PreparedOperation> prepared = operations.parallelStream().map(this::prepareOperation)
+                .collect(Collectors.toList());
+        List<ProductWrite> writes = prepared.stream().filter(operation -> operation.write != null)
+                .map(operation -> operation.write).collect(Collectors.toList());
+        boolean[] applied = productRepository.applyAll(writes);
+        List<BatchResultDto> results = new ArrayList<>(prepared.size());
+        int write = 0;
+        for (PreparedOperation operation : prepared) {
+            if(operation.write == null){
+                results.add(operation.result);
+            }else if(applied[write++]){
+                publishChange(operation.changeType(), operation.write.getId());
+                results.add(operation.result);
+            }else{
+                results.add(createFailedResult(operation.write.getId(), getSkipReason(operation.write)));
+            }
+        }
+        return new BatchResponseDto(results);
     }
 
     @Override
     public ProductsResponseDto findByTag(String tagFromRequest){
         Tag tag = Tag.build(tagFromRequest);
         List<Product> products = productRepository.findByTag(tag);
-        return new ProductsResponseDto(products.stream().map(product -> new ProductResponseDto(product.getId(),
-                product.getName(), createPriceDtoToResponse(product.getPrice()),
-                createImageDtoToResponse(product.getImage().orElse(null)),
-                createDescriptionDtoToResponse(product.getDescription().orElse(null)),
-                createTagsDtoToResponse(product.getTags().orElse(null)))).collect(Collectors.toList()));
+        return new ProductsResponseDto(products.stream().map(this::createProductResponse)
+                .collect(Collectors.toList()));
 
     }
 
-    private PriceDto createPriceDtoToResponse(Price price){
-        return new PriceDto(price.getAmount().toString(), price.getCurrency().getCurrencyCode());
+    @Override
+    public Stream<ProductResponseDto> streamAll() {
+        return productRepository.getAll().map(this::createProductResponse);
     }
 
-    private DescriptionDto createDescriptionDtoToResponse(Description description){
-        if(description != null){
-            return new DescriptionDto(description.getText());
-        }else return null;
+    @Override
+    public ProductsResponseDto getPage(String cursor, int limit) {
+        validatePageLimit(limit);
+        return createPageResponse(productRepository.getPage(PageCursor.decode(cursor), limit + 1), limit);
     }
 
-    private ImageDto createImageDtoToResponse(Image image){
-        if(image != null){
-            return new ImageDto(image.getUrl().toString());
-        }else return null;
+    @Override
+    public ProductsResponseDto findByTag(String tagFromRequest, String cursor, int limit) {
+        validatePageLimit(limit);
+        Tag tag = Tag.build(tagFromRequest);
+        return createPageResponse(productRepository.findByTag(tag, PageCursor.decode(cursor), limit + 1), limit);
     }
 
-    private Set<TagDto> createTagsDtoToResponse(Set<Tag> tags){
-        if(tags != null){
-            return tags.stream().map(tag -> new TagDto(tag.getName())).collect(Collectors.toSet());
-        }else return null;
+    @Override
+    public ProductsResponseDto findByTags(String tags, String match, String cursor, int limit) {
+        validatePageLimit(limit);
+        TagQuery query = TagQuery.parse(tags, match);
+        return createPageResponse(productRepository.findByTags(query, PageCursor.decode(cursor), limit + 1), limit);
     }
 
-    private Set<Tag> getTagsFromRequest(ProductRequestDto productRequest){
+    @Override
+    public ProductsResponseDto findByPriceRange(String currency, String minPrice, String maxPrice) {
+        List<Product> products = productRepository.findByPriceRange(getCurrencyFromRequest(currency),
+                getAmountFromRequest(minPrice), getAmountFromRequest(maxPrice));
+        return new ProductsResponseDto(products.stream().map(this::createProductResponse)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public ProductsResponseDto search(String query, int limit) {
+        validatePageLimit(limit);
+        if(query == null || query.isBlank()) throw new EmptySearchQueryException();
+        List<Product> products = productRepository.search(query, limit);
+        return new ProductsResponseDto(products.stream().map(this::createProductResponse)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public TagFacetsResponseDto getTagFacets(String tag, int limit) {
+        validatePageLimit(limit);
+        Map<Tag, Integer> facets = productRepository.tagFacets(tag == null ? null : Tag.build(tag), limit);
+        return new TagFacetsResponseDto(facets.entrySet().stream()
+                .map(facet -> new TagFacetDto(facet.getKey().getName(), facet.getValue()))
+                .collect(Collectors.toList()));
+    }
+
+    private void validatePageLimit(int limit) {
+        if(limit < 1 || limit > MAX_PAGE_LIMIT) throw new BadPageLimitException();
+    }
+
+    // Pages are fetched with one extra product, which tells whether a next page exists without another lookup.
+    private ProductsResponseDto createPageResponse(List<Product> products, int limit) {
+        List<Product> page = products.size() > limit ? products.subList(0, limit) : products;
+        String nextCursor = products.size() > limit ? PageCursor.encode(page.get(limit - 1).getId()) : null;
+        return new ProductsResponseDto(page.stream().map(this::createProductResponse)
+                .collect(Collectors.toList()), nextCursor);
+    }
+
+    private ProductResponseDto applyUpdate(Product oldProduct, Product newProduct) {
+        ProductResponseDto response = createProductResponse(newProduct);
+        productRepository.update(oldProduct, newProduct);
+        publishChange(ProductChange.Type.UPDATED, newProduct.getId());
+        return response;
+    }
+
+    private void publishChange(ProductChange.Type type, String id) {
+        ProductChange change = new ProductChange(type, id);
+        for (ProductChangeListener listener : changeListeners) {
+            listener.productChanged(change);
+        }
+    }
+
+    private PreparedOperation prepareOperation(BatchOperationDto operation) {
         try {
-            return productRequest.getTags().stream().map(tag -> Tag.build(tag.getName()))
-                    .collect(Collectors.toSet());
-        }catch (NullPointerException e) {
-            return Collections.emptySet();
+            if(operation == null) throw new UnknownBatchOperationException();
+            if(BatchOperationDto.CREATE.equals(operation.getOp())){
+                Product product = requestMapper.createProduct(getProductFromOperation(operation));
+                return new PreparedOperation(ProductWrite.save(product), new BatchResultDto(
+                        HttpStatus.CREATED.value(), product.getId(), createProductResponse(product), null));
+            }
+            if(BatchOperationDto.UPDATE.equals(operation.getOp())){
+                if(operation.getId() == null) throw new EmptyIdException();
+                Product oldProduct = productRepository.findById(operation.getId());
+                Product newProduct = requestMapper.updateProduct(oldProduct, getProductFromOperation(operation));
+                return new PreparedOperation(ProductWrite.update(oldProduct, newProduct), new BatchResultDto(
+                        HttpStatus.OK.value(), newProduct.getId(), createProductResponse(newProduct), null));
+            }
+            if(BatchOperationDto.DELETE.equals(operation.getOp())){
+                if(operation.getId() == null) throw new EmptyIdException();
+                return new PreparedOperation(ProductWrite.delete(operation.getId()), new BatchResultDto(
+                        HttpStatus.NO_CONTENT.value(), operation.getId(), null, null));
+            }
+            throw new UnknownBatchOperationException();
+        }catch (RuntimeException e) {
+            return new PreparedOperation(null, createFailedResult(operation == null ? null : operation.getId(), e));
         }
     }
 
-    private Description getDescriptionFromRequest(ProductRequestDto productRequest){
+    // The repository only reports that a write was skipped; an update of a product that still exists lost a race.
+    private RuntimeException getSkipReason(ProductWrite write) {
+        if(write.getType() != ProductWrite.Type.UPDATE) return new ProductNotFoundException();
         try {
-            return Description.build(productRequest.getDescription().getText());
-        }catch (NullPointerException e) {
-            return null;
+            productRepository.findById(write.getId());
+            return new ProductVersionConflictException();
+        }catch (ProductNotFoundException e) {
+            return e;
         }
     }
 
-    private Image getImageFromRequest(ProductRequestDto productRequest){
-        try{
-            return Image.build(productRequest.getImage().getUrl());
-        }catch (NullPointerException e) {
-            return null;
+    private ProductRequestDto getProductFromOperation(BatchOperationDto operation) {
+        if(operation.getProduct() == null) throw new BadProductFieldException();
+        return operation.getProduct();
+    }
+
+    // Failures are reported with the status and reason the exception would have produced for a single request;
+    // an unexpected exception fails only its own operation, not the operations around it.
+    private BatchResultDto createFailedResult(String id, RuntimeException exception) {
+        if(exception instanceof InvalidProductException){
+            return new BatchResultDto(HttpStatus.BAD_REQUEST.value(), id, null,
+                    ((InvalidProductException) exception).getViolations().stream().map(ViolationDto::toString)
+                            .collect(Collectors.joining("; ")));
+        }
+        ResponseStatus status = AnnotationUtils.findAnnotation(exception.getClass(), ResponseStatus.class);
+        if(status == null){
+            return new BatchResultDto(HttpStatus.INTERNAL_SERVER_ERROR.value(), id, null,
+                    HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase());
         }
+        return new BatchResultDto(status.code().value(), id, null, status.reason());
     }
 
-    private Price getPriceFromRequest(ProductRequestDto productRequest) {
-        if(productRequest.getPrice() == null)  throw new ProductPriceIsNullException();
-        return Price.build(productRequest.getPrice().getAmount(), productRequest.getPrice().getCurrency());
+    // Projections are built when a product version is written and shared by every read of it afterwards.
+    private ProductResponseDto createProductResponse(Product product) {
+        return product.getProjection();
+    }
+
+    private Currency getCurrencyFromRequest(String currency) {
+        try {
+            return Currency.getInstance(currency);
+        }catch (IllegalArgumentException | NullPointerException e) {
+            throw new BadPriceException();
+        }
+    }
+
+    private BigDecimal getAmountFromRequest(String amount) {
+        if(amount == null) return null;
+        try {
+            return new BigDecimal(amount);
+        }catch (NumberFormatException e) {
+            throw new BadPriceException();
+        }
+    }
+
+    private static final class PreparedOperation {
+
+        private final ProductWrite write;
+        private final BatchResultDto result;
+
+        private PreparedOperation(ProductWrite write, BatchResultDto result) {
+            this.write = write;
+            this.result = result;
+        }
+
+        private ProductChange.Type changeType() {
+            switch (write.getType()) {
+                case SAVE:
+                    return ProductChange.Type.CREATED;
+                case UPDATE:
+                    return ProductChange.Type.UPDATED;
+                default:
+                    return ProductChange.Type.DELETED;
+            }
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+package pl.zaradny.springApp.domain;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Maps a product to the response it is read as. Each product is mapped once, when it is built,
+ * see {@link Product#getProjection()}.
+ */
+final class ProductProjection {
+
+    private ProductProjection() {}
+
+    static ProductResponseDto of(Product product) {
+        return new ProductResponseDto(product.getId(), product.getName(), createPriceDtoToResponse(product.getPrice()),
+                createImageDtoToResponse(product.getImage().orElse(null)),
+                createDescriptionDtoToResponse(product.getDescription().orElse(null)),
+                createTagsDtoToResponse(product.getTags().orElse(null)), product.getVersion());
+    }
+
+    private static PriceDto createPriceDtoToResponse(Price price){
+        return new PriceDto(price.getAmount().toString(), price.getCurrency().getCurrencyCode());
+    }
+
+    private static DescriptionDto createDescriptionDtoToResponse(Description description){
+        if(description != null){
+            return new DescriptionDto(description.getText());
+        }else return null;
+    }
+
+    private static ImageDto createImageDtoToResponse(Image image){
+        if(image != null){
+            return new ImageDto(image.getUrl());
+        }else return null;
+    }
+
+    private static Set<TagDto> createTagsDtoToResponse(Set<Tag> tags){
+        if(tags != null){
+            return tags.stream().map(tag -> new TagDto(tag.getName())).collect(Collectors.toUnmodifiableSet());
+        }else return null;
+    }
+}
@@ -0,0 +1,80 @@
+package pl.zaradny.springApp.domain;
+
+import pl.zaradny.springApp.exceptions.InvalidProductException;
+import pl.zaradny.springApp.exceptions.ProductPriceIsNullException;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Turns product requests into products, shared by the blocking and the reactive facade.
+ */
+class ProductRequestMapper {
+
+    private final IdGenerator idGenerator;
+    private final ProductRequestValidator requestValidator = new ProductRequestValidator();
+
+    ProductRequestMapper(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    // Requests are validated up front, so building the product below does not throw for bad input. The image is
+    // parsed once, here, and the validator reports it when it could not be.
+    private Image validateRequest(ProductRequestDto productRequest) {
+        Image image = getImageFromRequest(productRequest);
+        List<ViolationDto> violations = requestValidator.validate(productRequest, image);
+        if(!violations.isEmpty()) throw new InvalidProductException(violations);
+        return image;
+    }
+
+    Product createProduct(ProductRequestDto productRequest) {
+        Image image = validateRequest(productRequest);
+        return Product.build()
+                .withId(idGenerator.nextId())
+                .withName(productRequest.getName())
+                .withPrice(getPriceFromRequest(productRequest))
+                .withCreatedAt(LocalDateTime.now())
+                .withDescription(getDescriptionFromRequest(productRequest))
+                .withImage(image)
+                .withTags(getTagsFromRequest(productRequest))
+                .build();
+    }
+
+    Product updateProduct(Product oldProduct, ProductRequestDto productRequestDto) {
+        Image image = validateRequest(productRequestDto);
+        return Product.build()
+                .withId(oldProduct.getId())
+                .withName(productRequestDto.getName())
+                .withPrice(getPriceFromRequest(productRequestDto))
+                .withCreatedAt(oldProduct.getCreatedAt())
+                .withImage(image)
+                .withDescription(getDescriptionFromRequest(productRequestDto))
+                .withTags(getTagsFromRequest(productRequestDto))
+                .withVersion(oldProduct.getVersion() + 1)
+                .build();
+    }
+
+    private Set<Tag> getTagsFromRequest(ProductRequestDto productRequest){
+        if(productRequest.getTags() == null) return Collections.emptySet();
+        return productRequest.getTags().stream().map(tag -> Tag.build(tag.getName()))
+                .collect(Collectors.toSet());
+    }
+
+    private Description getDescriptionFromRequest(ProductRequestDto productRequest){
+        if(productRequest.getDescription() == null || productRequest.getDescription().getText() == null) return null;
+        return Description.build(productRequest.getDescription().getText());
+    }
+
+    private Image getImageFromRequest(ProductRequestDto productRequest){
+        if(productRequest.getImage() == null) return null;
+        return Image.tryBuild(productRequest.getImage().getUrl()).orElse(null);
+    }
+
+    private Price getPriceFromRequest(ProductRequestDto productRequest) {
+        if(productRequest.getPrice() == null)  throw new ProductPriceIsNullException();
+        return Price.build(productRequest.getPrice().getAmount(), productRequest.getPrice().getCurrency());
+    }
+}
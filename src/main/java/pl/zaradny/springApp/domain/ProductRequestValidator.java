@@ -0,0 +1,65 @@
+package pl.zaradny.springApp.domain;
+
+import com.google.common.base.Strings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks a product request field by field and collects every violation instead of stopping at the first one.
+ * Nothing is thrown and, for a valid request, nothing is allocated.
+ */
+class ProductRequestValidator {
+
+    List<ViolationDto> validate(ProductRequestDto request) {
+        ImageDto image = request.getImage();
+        return validate(request, image == null ? null : Image.tryBuild(image.getUrl()).orElse(null));
+    }
+
+    /**
+     * Validates a request whose image the caller has already parsed, {@code null} when the request has none or its
+     * URL is malformed, so the URL is parsed only once.
+     */
+    List<ViolationDto> validate(ProductRequestDto request, Image image) {
+        List<ViolationDto> violations = Collections.emptyList();
+        if(Strings.isNullOrEmpty(request.getName())){
+            violations = add(violations, "name", "Product name can not be empty");
+        }
+        PriceDto price = request.getPrice();
+        if(price == null){
+            violations = add(violations, "price", "Product price can not be null");
+        }else{
+            if(!Price.isValidAmount(price.getAmount())){
+                violations = add(violations, "price.amount", "Price amount must be a number");
+            }
+            if(!Price.isValidCurrency(price.getCurrency())){
+                violations = add(violations, "price.currency", "Price currency must be an ISO 4217 code");
+            }
+        }
+        if(request.getImage() != null && image == null){
+            violations = add(violations, "image.url", "Image URL is not correct");
+        }
+        // A description without text is treated as no description at all.
+        if(request.getDescription() != null && request.getDescription().getText() != null
+                && !Description.isValidText(request.getDescription().getText())){
+            violations = add(violations, "description.text",
+                    "Description can not be longer than " + Description.MAX_LENGTH + " characters");
+        }
+        List<TagDto> tags = request.getTags();
+        if(tags != null){
+            for (int i = 0; i < tags.size(); i++) {
+                if(tags.get(i) == null || !Tag.isValidName(tags.get(i).getName())){
+                    violations = add(violations, "tags[" + i + "].name", "Tag can not be empty");
+                }
+            }
+        }
+        return violations;
+    }
+
+    private static List<ViolationDto> add(List<ViolationDto> violations, String field, String message) {
+        List<ViolationDto> result = violations.isEmpty() ? new ArrayList<>() : violations;
+        result.add(new ViolationDto(field, message));
+        return result;
+    }
+}
@@ -14,6 +14,7 @@ public class ProductResponseDto {
     private final ImageDto image;
     private final DescriptionDto description;
     private final Set<TagDto> tags;
+    private final long version;
 
     @JsonCreator
     public ProductResponseDto(@JsonProperty("id") String id,
@@ -21,13 +22,15 @@ public class ProductResponseDto {
                               @JsonProperty("price") PriceDto price,
                               @JsonProperty("image") ImageDto image,
                               @JsonProperty("description") DescriptionDto description,
-                              @JsonProperty("tags") Set<TagDto> tags) {
+                              @JsonProperty("tags") Set<TagDto> tags,
+                              @JsonProperty("version") long version) {
         this.id = id;
         this.name = name;
         this.price = price;
         this.image = image;
         this.description = description;
         this.tags = tags;
+        this.version = version;
     }
 
     public Set<TagDto> getTags() {
@@ -54,6 +57,10 @@ public class ProductResponseDto {
         return image;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -64,11 +71,12 @@ public class ProductResponseDto {
                 Objects.equals(price, that.price) &&
                 Objects.equals(image, that.image) &&
                 Objects.equals(description, that.description) &&
-                Objects.equals(tags, that.tags);
+                Objects.equals(tags, that.tags) &&
+                version == that.version;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, price, image, description, tags);
+        return Objects.hash(id, name, price, image, description, tags, version);
     }
 }
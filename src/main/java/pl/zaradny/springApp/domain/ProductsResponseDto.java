@@ -1,6 +1,7 @@
 package pl.zaradny.springApp.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.List;
@@ -9,20 +10,33 @@ import java.util.Objects;
 public class ProductsResponseDto {
 
     private final List<ProductResponseDto> products;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String nextCursor;
+
+    public ProductsResponseDto(List<ProductResponseDto> products) {
+        this(products, null);
+    }
 
     @JsonCreator
-    public ProductsResponseDto(@JsonProperty("products") List<ProductResponseDto> products) {
+    public ProductsResponseDto(@JsonProperty("products") List<ProductResponseDto> products,
+                               @JsonProperty("nextCursor") String nextCursor) {
         this.products = products;
+        this.nextCursor = nextCursor;
     }
 
     public List<ProductResponseDto> getProducts() {
         return products;
     }
 
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
     @Override
     public String toString() {
         return "ProductsResponseDto{" +
                 "products=" + products +
+                ", nextCursor='" + nextCursor + '\'' +
                 '}';
     }
 
@@ -31,11 +45,12 @@ public class ProductsResponseDto {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ProductsResponseDto that = (ProductsResponseDto) o;
-        return Objects.equals(products, that.products);
+        return Objects.equals(products, that.products) &&
+                Objects.equals(nextCursor, that.nextCursor);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(products);
+        return Objects.hash(products, nextCursor);
     }
 }
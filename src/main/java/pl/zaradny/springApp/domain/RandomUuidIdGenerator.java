@@ -0,0 +1,19 @@
+package pl.zaradny.springApp.domain;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Random version 4 UUIDs. Every call goes through one shared {@link java.security.SecureRandom}.
+ */
+@Component
+@ConditionalOnProperty(name = "products.id-generator", havingValue = "uuid")
+class RandomUuidIdGenerator implements IdGenerator {
+
+    @Override
+    public String nextId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,43 @@
+package pl.zaradny.springApp.domain;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link ProductFacade}, used by the reactive web stack. Failures are signalled as errors
+ * carrying the same exceptions the blocking facade throws.
+ */
+public interface ReactiveProductFacade {
+
+    Mono<ProductResponseDto> findById(String id);
+
+    /**
+     * Same as {@link ProductFacade#getListingVersion()}; the counter is read without blocking.
+     */
+    long getListingVersion();
+
+    /**
+     * Same as {@link ProductFacade#getListingVersion(String)}.
+     */
+    long getListingVersion(String tag);
+
+    Mono<ProductResponseDto> create(ProductRequestDto productRequest);
+
+    Mono<ProductResponseDto> update(String id, ProductRequestDto productRequestDto);
+
+    /**
+     * Same as {@link ProductFacade#update(String, ProductRequestDto, long)}.
+     */
+    Mono<ProductResponseDto> update(String id, ProductRequestDto productRequestDto, long expectedVersion);
+
+    Mono<Void> deleteById(String id);
+
+    /**
+     * Emits every product in id order, as fast as the subscriber consumes them.
+     */
+    Flux<ProductResponseDto> getAll();
+
+    Flux<ProductResponseDto> findByTag(String tag);
+
+    Flux<ProductResponseDto> search(String query, int limit);
+}
@@ -0,0 +1,107 @@
+package pl.zaradny.springApp.domain;
+
+import org.springframework.stereotype.Component;
+import pl.zaradny.springApp.exceptions.BadPageLimitException;
+import pl.zaradny.springApp.exceptions.EmptySearchQueryException;
+import pl.zaradny.springApp.exceptions.ProductUpdateContendedException;
+import pl.zaradny.springApp.exceptions.ProductVersionConflictException;
+import pl.zaradny.springApp.infrastructure.ReactiveProductRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@Component
+class ReactiveProductFacadeImpl implements ReactiveProductFacade {
+
+    private static final int MAX_SEARCH_LIMIT = 1000;
+    private static final int MAX_UPDATE_ATTEMPTS = 16;
+
+    private final ReactiveProductRepository productRepository;
+    private final List<ProductChangeListener> changeListeners;
+    private final ProductRequestMapper requestMapper;
+
+    ReactiveProductFacadeImpl(ReactiveProductRepository productRepository,
+                              List<ProductChangeListener> changeListeners, IdGenerator idGenerator){
+        this.productRepository = productRepository;
+        this.changeListeners = List.copyOf(changeListeners);
+        this.requestMapper = new ProductRequestMapper(idGenerator);
+    }
+
+    @Override
+    public Mono<ProductResponseDto> findById(String id) {
+        return productRepository.findById(id).map(Product::getProjection);
+    }
+
+    @Override
+    public long getListingVersion() {
+        return productRepository.modificationCount();
+    }
+
+    @Override
+    public long getListingVersion(String tag) {
+        return productRepository.modificationCount(Tag.build(tag));
+    }
+
+    @Override
+    public Mono<ProductResponseDto> create(ProductRequestDto productRequest) {
+        return Mono.fromCallable(() -> requestMapper.createProduct(productRequest))
+                .flatMap(product -> productRepository.save(product)
+                        .doOnSuccess(saved -> publishChange(ProductChange.Type.CREATED, product.getId()))
+                        .thenReturn(product.getProjection()));
+    }
+
+    // Every retry subscribes again, so it re-reads the product and re-applies the request on top of the winner.
+    @Override
+    public Mono<ProductResponseDto> update(String id, ProductRequestDto productRequestDto) {
+        return productRepository.findById(id)
+                .flatMap(oldProduct -> applyUpdate(oldProduct, requestMapper.updateProduct(oldProduct,
+                        productRequestDto)))
+                .retry(MAX_UPDATE_ATTEMPTS - 1, error -> error instanceof ProductVersionConflictException)
+                .onErrorMap(ProductVersionConflictException.class, error -> new ProductUpdateContendedException());
+    }
+
+    @Override
+    public Mono<ProductResponseDto> update(String id, ProductRequestDto productRequestDto, long expectedVersion) {
+        return productRepository.findById(id)
+                .flatMap(oldProduct -> oldProduct.getVersion() != expectedVersion
+                        ? Mono.error(new ProductVersionConflictException())
+                        : applyUpdate(oldProduct, requestMapper.updateProduct(oldProduct, productRequestDto)));
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return productRepository.deleteById(id)
+                .doOnSuccess(deleted -> publishChange(ProductChange.Type.DELETED, id));
+    }
+
+    @Override
+    public Flux<ProductResponseDto> getAll() {
+        return productRepository.getAll().map(Product::getProjection);
+    }
+
+    @Override
+    public Flux<ProductResponseDto> findByTag(String tag) {
+        return Flux.defer(() -> productRepository.findByTag(Tag.build(tag))).map(Product::getProjection);
+    }
+
+    @Override
+    public Flux<ProductResponseDto> search(String query, int limit) {
+        if(limit < 1 || limit > MAX_SEARCH_LIMIT) return Flux.error(new BadPageLimitException());
+        if(query == null || query.isBlank()) return Flux.error(new EmptySearchQueryException());
+        return productRepository.search(query, limit).map(Product::getProjection);
+    }
+
+    private Mono<ProductResponseDto> applyUpdate(Product oldProduct, Product newProduct) {
+        return productRepository.update(oldProduct, newProduct)
+                .doOnSuccess(updated -> publishChange(ProductChange.Type.UPDATED, newProduct.getId()))
+                .thenReturn(newProduct.getProjection());
+    }
+
+    private void publishChange(ProductChange.Type type, String id) {
+        ProductChange change = new ProductChange(type, id);
+        for (ProductChangeListener listener : changeListeners) {
+            listener.productChanged(change);
+        }
+    }
+}
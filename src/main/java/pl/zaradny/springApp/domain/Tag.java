@@ -1,26 +1,34 @@
 package pl.zaradny.springApp.domain;
 
-import com.google.common.base.Preconditions;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import pl.zaradny.springApp.exceptions.EmptyTagException;
 
-import java.util.Objects;
-
+/**
+ * Tags are interned: while a tag is referenced anywhere, {@link #build(String)} returns that same instance for its
+ * name. Interning is weak, so names that are only looked up, never stored, do not stay in memory.
+ */
 public final class Tag {
 
+    private static final Interner<Tag> CANONICAL_TAGS = Interners.newWeakInterner();
+
     private final String name;
+    private final int hash;
 
     private Tag(String name) {
         this.name = name;
+        this.hash = name.hashCode();
     }
 
     public static Tag build(String name){
-        try {
-            Preconditions.checkNotNull(name);
-            Preconditions.checkArgument(name != "");
-        }catch (IllegalArgumentException | NullPointerException e) {
+        if(!isValidName(name)){
             throw new EmptyTagException();
         }
-        return new Tag(name);
+        return CANONICAL_TAGS.intern(new Tag(name));
+    }
+
+    public static boolean isValidName(String name){
+        return name != null && !name.isEmpty();
     }
 
     public String getName() {
@@ -29,14 +37,15 @@ public final class Tag {
 
     @Override
     public boolean equals(Object o) {
+        // Canonical instances make this the common case; the comparison below only runs inside the interner.
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Tag tag = (Tag) o;
-        return Objects.equals(name, tag.name);
+        return hash == tag.hash && name.equals(tag.name);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name);
+        return hash;
     }
 }
@@ -0,0 +1,46 @@
+package pl.zaradny.springApp.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+public class TagFacetDto {
+
+    private final String tag;
+    private final int count;
+
+    @JsonCreator
+    public TagFacetDto(@JsonProperty("tag") String tag,
+                       @JsonProperty("count") int count) {
+        this.tag = tag;
+        this.count = count;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TagFacetDto that = (TagFacetDto) o;
+        return count == that.count &&
+                Objects.equals(tag, that.tag);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tag, count);
+    }
+
+    @Override
+    public String toString() {
+        return tag + " (" + count + ")";
+    }
+}
@@ -0,0 +1,20 @@
+package pl.zaradny.springApp.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class TagFacetsResponseDto {
+
+    private final List<TagFacetDto> facets;
+
+    @JsonCreator
+    public TagFacetsResponseDto(@JsonProperty("facets") List<TagFacetDto> facets) {
+        this.facets = facets;
+    }
+
+    public List<TagFacetDto> getFacets() {
+        return facets;
+    }
+}
@@ -0,0 +1,100 @@
+package pl.zaradny.springApp.domain;
+
+import pl.zaradny.springApp.exceptions.BadTagQueryException;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A boolean query over product tags: all or any of the included tags, and none of the excluded ones.
+ * Without included tags every product not carrying an excluded tag matches.
+ */
+public final class TagQuery {
+
+    public enum Match { ALL, ANY }
+
+    private static final String NOT = "!";
+    private static final int MAX_TERMS = 64;
+
+    private final Set<Tag> included;
+    private final Set<Tag> excluded;
+    private final Match match;
+
+    private TagQuery(Set<Tag> included, Set<Tag> excluded, Match match) {
+        this.included = Collections.unmodifiableSet(included);
+        this.excluded = Collections.unmodifiableSet(excluded);
+        this.match = match;
+    }
+
+    public static TagQuery of(Set<Tag> included, Set<Tag> excluded, Match match) {
+        return new TagQuery(new LinkedHashSet<>(included), new LinkedHashSet<>(excluded), match);
+    }
+
+    /**
+     * Parses comma separated tag names, where a name prefixed with {@code !} is excluded, combined with
+     * {@code all} (default) or {@code any} of the included ones.
+     */
+    public static TagQuery parse(String tags, String match) {
+        if(tags == null || tags.isEmpty()) throw new BadTagQueryException();
+        String[] terms = tags.split(",", -1);
+        if(terms.length > MAX_TERMS) throw new BadTagQueryException();
+        Set<Tag> included = new LinkedHashSet<>();
+        Set<Tag> excluded = new LinkedHashSet<>();
+        for (String term : terms) {
+            if(term.startsWith(NOT)){
+                excluded.add(Tag.build(term.substring(NOT.length())));
+            }else{
+                included.add(Tag.build(term));
+            }
+        }
+        return new TagQuery(included, excluded, parseMatch(match));
+    }
+
+    private static Match parseMatch(String match) {
+        if(match == null || match.equalsIgnoreCase("all")) return Match.ALL;
+        if(match.equalsIgnoreCase("any")) return Match.ANY;
+        throw new BadTagQueryException();
+    }
+
+    public Set<Tag> getIncluded() {
+        return included;
+    }
+
+    public Set<Tag> getExcluded() {
+        return excluded;
+    }
+
+    public Match getMatch() {
+        return match;
+    }
+
+    public boolean matches(Product product) {
+        Set<Tag> tags = product.getTags().orElse(Collections.emptySet());
+        for (Tag tag : excluded) {
+            if(tags.contains(tag)) return false;
+        }
+        if(included.isEmpty()) return true;
+        if(match == Match.ALL) return tags.containsAll(included);
+        for (Tag tag : included) {
+            if(tags.contains(tag)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TagQuery tagQuery = (TagQuery) o;
+        return included.equals(tagQuery.included) &&
+                excluded.equals(tagQuery.excluded) &&
+                match == tagQuery.match;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(included, excluded, match);
+    }
+}
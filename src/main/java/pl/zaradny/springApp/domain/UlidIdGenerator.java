@@ -0,0 +1,67 @@
+package pl.zaradny.springApp.domain;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ULIDs: 48 bits of epoch milliseconds followed by 80 random bits, as 26 Crockford base32 characters, so ids sort by
+ * creation time as plain strings. All state is per thread; ids from one thread are strictly increasing, ids from
+ * different threads created within the same millisecond are ordered arbitrarily.
+ */
+@Component
+@ConditionalOnProperty(name = "products.id-generator", havingValue = "ulid", matchIfMissing = true)
+class UlidIdGenerator implements IdGenerator {
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int LENGTH = 26;
+
+    private final ThreadLocal<State> states = ThreadLocal.withInitial(State::new);
+
+    @Override
+    public String nextId() {
+        State state = states.get();
+        long now = System.currentTimeMillis();
+        if (now > state.lastMillis) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            state.lastMillis = now;
+            state.randomHigh = random.nextInt(1 << 16);
+            state.randomLow = random.nextLong();
+        } else {
+            // Same millisecond, or the clock went back: keep the last timestamp and count up in the random part.
+            state.randomLow++;
+            if (state.randomLow == 0) {
+                state.randomHigh = (state.randomHigh + 1) & 0xFFFF;
+            }
+        }
+        return encode(state.lastMillis, state.randomHigh, state.randomLow);
+    }
+
+    private static String encode(long millis, int randomHigh, long randomLow) {
+        char[] chars = new char[LENGTH];
+        long time = millis;
+        for (int i = 9; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (time & 31)];
+            time >>>= 5;
+        }
+        long low = randomLow;
+        for (int i = LENGTH - 1; i >= 14; i--) {
+            chars[i] = ALPHABET[(int) (low & 31)];
+            low >>>= 5;
+        }
+        // 12 characters took the low 60 random bits; the remaining 20 are the top 4 of randomLow and randomHigh.
+        long high = ((long) randomHigh << 4) | (randomLow >>> 60);
+        for (int i = 13; i >= 10; i--) {
+            chars[i] = ALPHABET[(int) (high & 31)];
+            high >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private static final class State {
+        private long lastMillis = -1;
+        private int randomHigh;
+        private long randomLow;
+    }
+}
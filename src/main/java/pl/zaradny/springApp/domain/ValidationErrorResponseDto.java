@@ -0,0 +1,34 @@
+package pl.zaradny.springApp.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Objects;
+
+public class ValidationErrorResponseDto {
+
+    private final List<ViolationDto> violations;
+
+    @JsonCreator
+    public ValidationErrorResponseDto(@JsonProperty("violations") List<ViolationDto> violations) {
+        this.violations = violations;
+    }
+
+    public List<ViolationDto> getViolations() {
+        return violations;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ValidationErrorResponseDto that = (ValidationErrorResponseDto) o;
+        return Objects.equals(violations, that.violations);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(violations);
+    }
+}
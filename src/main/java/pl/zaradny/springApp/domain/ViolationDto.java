@@ -0,0 +1,46 @@
+package pl.zaradny.springApp.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+public class ViolationDto {
+
+    private final String field;
+    private final String message;
+
+    @JsonCreator
+    public ViolationDto(@JsonProperty("field") String field,
+                        @JsonProperty("message") String message) {
+        this.field = field;
+        this.message = message;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ViolationDto that = (ViolationDto) o;
+        return Objects.equals(field, that.field) &&
+                Objects.equals(message, that.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(field, message);
+    }
+
+    @Override
+    public String toString() {
+        return field + ": " + message;
+    }
+}
@@ -0,0 +1,8 @@
+package pl.zaradny.springApp.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Page limit must be between 1 and 1000")
+public class BadPageLimitException extends RuntimeException {
+}
@@ -0,0 +1,8 @@
+package pl.zaradny.springApp.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Tag query is not correct")
+public class BadTagQueryException extends RuntimeException {
+}
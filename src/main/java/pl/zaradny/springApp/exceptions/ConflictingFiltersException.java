@@ -0,0 +1,8 @@
+package pl.zaradny.springApp.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Only one of tag, tags and currency can be used at a time")
+public class ConflictingFiltersException extends RuntimeException {
+}
@@ -0,0 +1,26 @@
+package pl.zaradny.springApp.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import pl.zaradny.springApp.domain.ViolationDto;
+
+import java.util.List;
+
+/**
+ * Carries every violation found in a product request. Thrown once per rejected request, after validation has
+ * finished, and without a stack trace, which would only describe the validation code itself.
+ */
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Product is not correct")
+public class InvalidProductException extends RuntimeException {
+
+    private final List<ViolationDto> violations;
+
+    public InvalidProductException(List<ViolationDto> violations) {
+        super(null, null, false, false);
+        this.violations = violations;
+    }
+
+    public List<ViolationDto> getViolations() {
+        return violations;
+    }
+}
@@ -0,0 +1,8 @@
+package pl.zaradny.springApp.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.NOT_IMPLEMENTED, reason = "This query is not available with the configured product store")
+public class UnsupportedProductQueryException extends RuntimeException {
+}
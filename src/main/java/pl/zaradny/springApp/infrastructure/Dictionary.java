@@ -0,0 +1,34 @@
+package pl.zaradny.springApp.infrastructure;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns small dense codes to repeated values so columns can store the code instead of the value.
+ * Codes are assigned by a single writer and decoded by any number of readers.
+ */
+final class Dictionary<T> {
+
+    private final Map<T, Integer> codes = new ConcurrentHashMap<>();
+    private volatile Object[] values = new Object[16];
+    private int size;
+
+    int encode(T value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    T decode(int code) {
+        return (T) values[code];
+    }
+}
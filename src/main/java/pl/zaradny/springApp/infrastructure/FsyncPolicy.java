@@ -0,0 +1,20 @@
+package pl.zaradny.springApp.infrastructure;
+
+/**
+ * When the product log forces appended records to the storage device.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Every write returns only after its record is on disk; concurrent writers share one force (group commit). The
+     * write is applied in memory before the force, so readers can see it before it is durable, and a crash in
+     * between loses a write that was already read though never acknowledged to its writer.
+     */
+    ALWAYS,
+
+    /** Records are forced by a background task every configured interval; a crash loses at most that window. */
+    INTERVAL,
+
+    /** Records are left to the operating system and forced only on close. */
+    NEVER
+}
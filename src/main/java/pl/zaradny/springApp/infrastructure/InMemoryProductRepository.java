@@ -1,58 +1,188 @@
 package pl.zaradny.springApp.infrastructure;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 import pl.zaradny.springApp.domain.*;
 import pl.zaradny.springApp.exceptions.ProductNotFoundException;
+import pl.zaradny.springApp.exceptions.ProductVersionConflictException;
 
+import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
+@Qualifier("productStore")
+@ConditionalOnProperty(name = "products.store", havingValue = "memory", matchIfMissing = true)
 public class InMemoryProductRepository implements ProductRepository {
 
-    private final Map<String, Product> products = new HashMap<>();
+    // Every check-and-act runs inside compute() so it is atomic per id and only locks that id's bin.
+    // Indexes are maintained inside the same compute() call, so writes to one product reach them in order.
+    // Modification counters are bumped only once compute() has returned and the write is visible.
+    private final ConcurrentMap<String, Product> products = new ConcurrentHashMap<>();
+    // Always sorted by id; iterating it is weakly consistent and never blocks writers.
+    private final ConcurrentNavigableMap<String, Product> productsInIdOrder = new ConcurrentSkipListMap<>();
+    private final TagIndex tagIndex = new TagIndex();
+    private final PriceIndex priceIndex = new PriceIndex();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final TagBitmapIndex tagBitmapIndex = new TagBitmapIndex();
+    private final TagFacets tagFacets = new TagFacets(tagBitmapIndex);
+    private final ModificationCounters modificationCounters = new ModificationCounters();
 
     @Override
     public void save(Product product) {
-        products.put(product.getId(), product);
+        Product[] replaced = new Product[1];
+        products.compute(product.getId(), (key, existing) -> {
+            productsInIdOrder.put(product.getId(), product);
+            reindex(existing, product);
+            replaced[0] = existing;
+            return product;
+        });
+        modificationCounters.changed(replaced[0], product);
     }
 
     @Override
     public Product findById(String id) {
-        if(products.containsKey(id)){
-            return products.get(id);
+        Product product = products.get(id);
+        if(product == null){
+            throw new ProductNotFoundException();
         }
-        throw new ProductNotFoundException();
+        return product;
+    }
+
+    boolean exists(String id) {
+        return products.containsKey(id);
+    }
+
+    boolean hasVersion(String id, long version) {
+        Product product = products.get(id);
+        return product != null && product.getVersion() == version;
     }
 
     @Override
     public void deleteById(String id) {
-        if(products.containsKey(id)){
-            products.remove(id);
-        }else{
-            throw new ProductNotFoundException();
-        }
+        Product[] deleted = new Product[1];
+        products.compute(id, (key, existing) -> {
+            if(existing == null){
+                throw new ProductNotFoundException();
+            }
+            productsInIdOrder.remove(id);
+            reindex(existing, null);
+            deleted[0] = existing;
+            return null;
+        });
+        modificationCounters.changed(deleted[0], null);
     }
 
     @Override
     public Product update(Product oldProduct, Product newProduct){
-        if(products.containsKey(oldProduct.getId())){
-            products.replace(oldProduct.getId(), newProduct);
+        Product[] replaced = new Product[1];
+        products.compute(oldProduct.getId(), (key, existing) -> {
+            if(existing == null){
+                throw new ProductNotFoundException();
+            }
+            if(existing.getVersion() != oldProduct.getVersion()){
+                throw new ProductVersionConflictException();
+            }
+            productsInIdOrder.put(key, newProduct);
+            reindex(existing, newProduct);
+            replaced[0] = existing;
             return newProduct;
-        }else{
-            throw new ProductNotFoundException();
-        }
+        });
+        modificationCounters.changed(replaced[0], newProduct);
+        return newProduct;
+    }
+
+    @Override
+    public Stream<Product> getAll() {
+        return productsInIdOrder.values().stream();
     }
 
     @Override
-    public List<Product> getAll() {
-        return List.copyOf(products.values());
+    public List<Product> getPage(String after, int limit) {
+        Map<String, Product> fromCursor = after == null ? productsInIdOrder : productsInIdOrder.tailMap(after, false);
+        return fromCursor.values().stream().limit(limit).collect(Collectors.toList());
     }
 
     @Override
     public List<Product> findByTag(Tag tag){
-        return products.values().stream()
-                .filter(product ->  product.getTags().isPresent() && product.getTags().get().contains(tag))
+        // The index is updated just before the product itself, so re-check the tag on what is actually stored.
+        return tagIndex.productIdsWith(tag).stream()
+                .map(products::get)
+                .filter(product -> product != null && hasTag(product, tag))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Product> findByTag(Tag tag, String after, int limit) {
+        NavigableSet<String> ids = tagIndex.productIdsWith(tag);
+        return (after == null ? ids : ids.tailSet(after, false)).stream()
+                .map(products::get)
+                .filter(product -> product != null && hasTag(product, tag))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Product> findByTags(TagQuery query, String after, int limit) {
+        return tagBitmapIndex.find(query, after, limit, products::get);
+    }
+
+    @Override
+    public List<Product> findByPriceRange(Currency currency, BigDecimal min, BigDecimal max) {
+        return priceIndex.productIdsInRange(currency, min, max).stream()
+                .map(products::get)
+                .filter(product -> product != null && PriceIndex.isInRange(product.getPrice(), currency, min, max))
                 .collect(Collectors.toList());
     }
+
+    @Override
+    public List<Product> search(String query, int limit) {
+        return searchIndex.search(query, limit).stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<Tag, Integer> tagFacets(Tag within, int limit) {
+        return tagFacets.top(within, limit);
+    }
+
+    @Override
+    public long modificationCount() {
+        return modificationCounters.global();
+    }
+
+    @Override
+    public long modificationCount(Tag tag) {
+        return modificationCounters.forTag(tag);
+    }
+
+    @Override
+    public int size() {
+        return products.size();
+    }
+
+    @Override
+    public int tagCount() {
+        return tagIndex.size();
+    }
+
+    private void reindex(Product oldProduct, Product newProduct) {
+        tagIndex.replace(oldProduct, newProduct);
+        priceIndex.replace(oldProduct, newProduct);
+        searchIndex.replace(oldProduct, newProduct);
+        tagFacets.replace(oldProduct, newProduct);
+        tagBitmapIndex.replace(oldProduct, newProduct);
+    }
+
+    private static boolean hasTag(Product product, Tag tag) {
+        return product.getTags().isPresent() && product.getTags().get().contains(tag);
+    }
 }
@@ -0,0 +1,195 @@
+package pl.zaradny.springApp.infrastructure;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.domain.TagQuery;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Times the operations of whichever store is active into {@code products.repository}, tagged with the operation and
+ * with the simple name of the exception it failed with, or {@code none}, like the facade timers. Set against those,
+ * they tell time spent in the store from time spent mapping and serializing.
+ */
+@Primary
+@Component
+class MeteredProductRepository implements ProductRepository {
+
+    private final ProductRepository delegate;
+    private final MeterRegistry meterRegistry;
+    private final OperationTimer save;
+    private final OperationTimer findById;
+    private final OperationTimer deleteById;
+    private final OperationTimer update;
+    private final OperationTimer applyAll;
+    private final OperationTimer getPage;
+    private final OperationTimer findByTag;
+    private final OperationTimer findByTags;
+    private final OperationTimer findByPriceRange;
+    private final OperationTimer search;
+    private final OperationTimer tagFacets;
+
+    MeteredProductRepository(@Qualifier("productStore") ProductRepository delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.save = new OperationTimer("save");
+        this.findById = new OperationTimer("findById");
+        this.deleteById = new OperationTimer("deleteById");
+        this.update = new OperationTimer("update");
+        this.applyAll = new OperationTimer("applyAll");
+        this.getPage = new OperationTimer("getPage");
+        this.findByTag = new OperationTimer("findByTag");
+        this.findByTags = new OperationTimer("findByTags");
+        this.findByPriceRange = new OperationTimer("findByPriceRange");
+        this.search = new OperationTimer("search");
+        this.tagFacets = new OperationTimer("tagFacets");
+    }
+
+    @Override
+    public void save(Product product) {
+        save.record(() -> {
+            delegate.save(product);
+            return null;
+        });
+    }
+
+    @Override
+    public Product findById(String id) {
+        return findById.record(() -> delegate.findById(id));
+    }
+
+    @Override
+    public void deleteById(String id) {
+        deleteById.record(() -> {
+            delegate.deleteById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public Product update(Product oldProduct, Product newProduct) {
+        return update.record(() -> delegate.update(oldProduct, newProduct));
+    }
+
+    @Override
+    public boolean[] applyAll(List<ProductWrite> writes) {
+        return applyAll.record(() -> delegate.applyAll(writes));
+    }
+
+    // The stream reads the store only as it is consumed, so timing the call would only time building the stream.
+    @Override
+    public Stream<Product> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public List<Product> getPage(String after, int limit) {
+        return getPage.record(() -> delegate.getPage(after, limit));
+    }
+
+    @Override
+    public List<Product> findByTag(Tag tag) {
+        return findByTag.record(() -> delegate.findByTag(tag));
+    }
+
+    @Override
+    public List<Product> findByTag(Tag tag, String after, int limit) {
+        return findByTag.record(() -> delegate.findByTag(tag, after, limit));
+    }
+
+    @Override
+    public List<Product> findByTags(TagQuery query, String after, int limit) {
+        return findByTags.record(() -> delegate.findByTags(query, after, limit));
+    }
+
+    @Override
+    public List<Product> findByPriceRange(Currency currency, BigDecimal min, BigDecimal max) {
+        return findByPriceRange.record(() -> delegate.findByPriceRange(currency, min, max));
+    }
+
+    @Override
+    public List<Product> search(String query, int limit) {
+        return search.record(() -> delegate.search(query, limit));
+    }
+
+    @Override
+    public Map<Tag, Integer> tagFacets(Tag within, int limit) {
+        return tagFacets.record(() -> delegate.tagFacets(within, limit));
+    }
+
+    // Counters below are read on every conditional request and metrics scrape; they are not timed.
+    @Override
+    public long modificationCount() {
+        return delegate.modificationCount();
+    }
+
+    @Override
+    public long modificationCount(Tag tag) {
+        return delegate.modificationCount(tag);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int tagCount() {
+        return delegate.tagCount();
+    }
+
+    @Override
+    public boolean hasBlockingWrites() {
+        return delegate.hasBlockingWrites();
+    }
+
+    private Timer timer(String operation, String exception) {
+        return Timer.builder("products.repository")
+                .description("Product store operations")
+                .tags("operation", operation, "exception", exception)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    private final class OperationTimer {
+
+        private final String operation;
+        private final Timer succeeded;
+        // Failures are rare and their exception types few, so their timers are registered on first use.
+        private final ConcurrentMap<Class<?>, Timer> failed = new ConcurrentHashMap<>();
+
+        private OperationTimer(String operation) {
+            this.operation = operation;
+            this.succeeded = timer(operation, "none");
+        }
+
+        private <T> T record(Supplier<T> call) {
+            long start = System.nanoTime();
+            try {
+                T result = call.get();
+                succeeded.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return result;
+            }catch (RuntimeException e) {
+                failed.computeIfAbsent(e.getClass(), type -> timer(operation, type.getSimpleName()))
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+        }
+    }
+}
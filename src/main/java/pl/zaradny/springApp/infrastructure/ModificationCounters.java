@@ -0,0 +1,47 @@
+package pl.zaradny.springApp.infrastructure;
+
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts writes to the whole catalog and to every tag, so listings can be versioned without looking at their content.
+ * Counters only grow; a tag's counter is kept after its last product is gone.
+ */
+class ModificationCounters {
+
+    private final AtomicLong global = new AtomicLong();
+    private final ConcurrentMap<Tag, AtomicLong> byTag = new ConcurrentHashMap<>();
+
+    /**
+     * Must be called after the write is visible to readers. A reader that saw the new count then also sees the new
+     * data, so a listing is never tagged with a version newer than its content.
+     */
+    void changed(Product oldProduct, Product newProduct) {
+        Set<Tag> touched = new HashSet<>();
+        if (oldProduct != null) {
+            touched.addAll(oldProduct.getTags().orElse(Set.of()));
+        }
+        if (newProduct != null) {
+            touched.addAll(newProduct.getTags().orElse(Set.of()));
+        }
+        for (Tag tag : touched) {
+            byTag.computeIfAbsent(tag, key -> new AtomicLong()).incrementAndGet();
+        }
+        global.incrementAndGet();
+    }
+
+    long global() {
+        return global.get();
+    }
+
+    long forTag(Tag tag) {
+        AtomicLong counter = byTag.get(tag);
+        return counter == null ? 0 : counter.get();
+    }
+}
@@ -0,0 +1,64 @@
+package pl.zaradny.springApp.infrastructure;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed-width values addressed by row number, stored in direct buffers allocated one chunk of rows at a time.
+ * Rows are written by a single writer before being published, after which they are only read.
+ */
+final class OffHeapColumn {
+
+    private static final int ROWS_PER_CHUNK = 1 << 16;
+
+    private final int width;
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    OffHeapColumn(int width) {
+        this.width = width;
+    }
+
+    void ensureCapacity(int rows) {
+        int needed = (rows + ROWS_PER_CHUNK - 1) / ROWS_PER_CHUNK;
+        ByteBuffer[] current = chunks;
+        if (needed > current.length) {
+            ByteBuffer[] grown = Arrays.copyOf(current, needed);
+            for (int i = current.length; i < needed; i++) {
+                grown[i] = ByteBuffer.allocateDirect(ROWS_PER_CHUNK * width);
+            }
+            chunks = grown;
+        }
+    }
+
+    void putLong(int row, long value) {
+        chunk(row).putLong(offset(row), value);
+    }
+
+    long getLong(int row) {
+        return chunk(row).getLong(offset(row));
+    }
+
+    void putInt(int row, int value) {
+        chunk(row).putInt(offset(row), value);
+    }
+
+    int getInt(int row) {
+        return chunk(row).getInt(offset(row));
+    }
+
+    void putShort(int row, short value) {
+        chunk(row).putShort(offset(row), value);
+    }
+
+    short getShort(int row) {
+        return chunk(row).getShort(offset(row));
+    }
+
+    private ByteBuffer chunk(int row) {
+        return chunks[row / ROWS_PER_CHUNK];
+    }
+
+    private int offset(int row) {
+        return (row % ROWS_PER_CHUNK) * width;
+    }
+}
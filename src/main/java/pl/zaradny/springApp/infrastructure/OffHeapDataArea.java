@@ -0,0 +1,180 @@
+package pl.zaradny.springApp.infrastructure;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+
+/**
+ * Area of variable-length values in direct buffers, appended one chunk at a time. Values are addressed by the long
+ * reference returned when they are appended; a single writer appends and releases while any number of readers read
+ * published values. Released bytes are counted per chunk, and a chunk that has become mostly garbage is reported by
+ * {@link #nextSparseChunk()} so the owner can move its live values out and {@link #drop(int)} it.
+ */
+final class OffHeapDataArea {
+
+    static final long NULL_REFERENCE = -1;
+
+    private static final int CHUNK_SIZE = 1 << 24;
+    private static final int SPARSE_LIVE_BYTES = CHUNK_SIZE / 4;
+
+    // Dropped chunks leave a null slot behind, so references into other chunks never change.
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private int[] liveBytes = new int[0];
+    private int chunkPosition = CHUNK_SIZE;
+    private final Deque<Integer> sparseChunks = new ArrayDeque<>();
+    private final BitSet queuedChunks = new BitSet();
+
+    long putString(String value) {
+        if (value == null) {
+            return NULL_REFERENCE;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer chunk = reserve(Integer.BYTES + bytes.length);
+        long reference = reference();
+        chunk.putInt(chunkPosition, bytes.length);
+        chunk.position(chunkPosition + Integer.BYTES);
+        chunk.put(bytes);
+        chunkPosition += Integer.BYTES + bytes.length;
+        return reference;
+    }
+
+    String getString(long reference) {
+        if (reference == NULL_REFERENCE) {
+            return null;
+        }
+        ByteBuffer chunk = chunk(reference).duplicate();
+        int offset = offset(reference);
+        byte[] bytes = new byte[checkedLength(chunk.getInt(offset), offset, 1)];
+        chunk.position(offset + Integer.BYTES);
+        chunk.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    long putInts(int[] values) {
+        ByteBuffer chunk = reserve(Integer.BYTES * (values.length + 1));
+        long reference = reference();
+        chunk.putInt(chunkPosition, values.length);
+        for (int i = 0; i < values.length; i++) {
+            chunk.putInt(chunkPosition + Integer.BYTES * (i + 1), values[i]);
+        }
+        chunkPosition += Integer.BYTES * (values.length + 1);
+        return reference;
+    }
+
+    int[] getInts(long reference) {
+        ByteBuffer chunk = chunk(reference);
+        int offset = offset(reference);
+        int[] values = new int[checkedLength(chunk.getInt(offset), offset, Integer.BYTES)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = chunk.getInt(offset + Integer.BYTES * (i + 1));
+        }
+        return values;
+    }
+
+    void releaseString(long reference) {
+        if (reference != NULL_REFERENCE) {
+            release(reference, Integer.BYTES + chunk(reference).getInt(offset(reference)));
+        }
+    }
+
+    void releaseInts(long reference) {
+        release(reference, Integer.BYTES * (1 + chunk(reference).getInt(offset(reference))));
+    }
+
+    boolean isIn(long reference, int chunk) {
+        return reference != NULL_REFERENCE && reference / CHUNK_SIZE == chunk;
+    }
+
+    static int chunkOf(long reference) {
+        return (int) (reference / CHUNK_SIZE);
+    }
+
+    /**
+     * Returns a chunk, other than the one being appended to, that holds less than a quarter of live bytes, or -1.
+     */
+    int nextSparseChunk() {
+        Integer chunk = sparseChunks.poll();
+        if (chunk == null) {
+            return -1;
+        }
+        queuedChunks.clear(chunk);
+        return chunk;
+    }
+
+    /**
+     * Frees a chunk whose live values have all been moved elsewhere. Readers still holding a reference into it fail,
+     * so the owner must make them retry.
+     */
+    void drop(int chunk) {
+        ByteBuffer[] remaining = chunks.clone();
+        remaining[chunk] = null;
+        liveBytes[chunk] = 0;
+        chunks = remaining;
+    }
+
+    long allocatedBytes() {
+        return Arrays.stream(chunks).filter(chunk -> chunk != null).count() * CHUNK_SIZE;
+    }
+
+    private void release(long reference, int size) {
+        int chunk = (int) (reference / CHUNK_SIZE);
+        liveBytes[chunk] -= size;
+        queueIfSparse(chunk);
+    }
+
+    private void queueIfSparse(int chunk) {
+        if (chunk != chunks.length - 1 && liveBytes[chunk] < SPARSE_LIVE_BYTES && !queuedChunks.get(chunk)) {
+            queuedChunks.set(chunk);
+            sparseChunks.add(chunk);
+        }
+    }
+
+    private ByteBuffer reserve(int size) {
+        if (size > CHUNK_SIZE) {
+            throw new IllegalArgumentException("Value of " + size + " bytes does not fit in an off-heap chunk");
+        }
+        ByteBuffer[] current = chunks;
+        if (chunkPosition + size > CHUNK_SIZE) {
+            ByteBuffer[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            liveBytes = Arrays.copyOf(liveBytes, grown.length);
+            chunks = grown;
+            chunkPosition = 0;
+            if (current.length > 0) {
+                // Releases into the chunk that was being appended to were not queued while it was.
+                queueIfSparse(current.length - 1);
+            }
+            liveBytes[current.length] = size;
+            return grown[current.length];
+        }
+        liveBytes[current.length - 1] += size;
+        return current[current.length - 1];
+    }
+
+    private long reference() {
+        return (long) (chunks.length - 1) * CHUNK_SIZE + chunkPosition;
+    }
+
+    private ByteBuffer chunk(long reference) {
+        ByteBuffer chunk = chunks[(int) (reference / CHUNK_SIZE)];
+        if (chunk == null) {
+            throw new IllegalStateException("Off-heap chunk of reference " + reference + " was dropped");
+        }
+        return chunk;
+    }
+
+    private static int offset(long reference) {
+        return (int) (reference % CHUNK_SIZE);
+    }
+
+    // A reader racing with a recycled row may follow a stale reference; a bad length must fail, not allocate.
+    private static int checkedLength(int length, int offset, int elementSize) {
+        if (length < 0 || offset + Integer.BYTES + (long) length * elementSize > CHUNK_SIZE) {
+            throw new IllegalStateException("Corrupt off-heap value at offset " + offset);
+        }
+        return length;
+    }
+}
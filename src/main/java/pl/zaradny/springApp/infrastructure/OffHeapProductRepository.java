@@ -0,0 +1,456 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import pl.zaradny.springApp.domain.*;
+import pl.zaradny.springApp.exceptions.ProductNotFoundException;
+import pl.zaradny.springApp.exceptions.ProductVersionConflictException;
+import pl.zaradny.springApp.exceptions.UnsupportedProductQueryException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps product fields in off-heap columns, one row per stored product version, with tags and currencies
+ * dictionary-encoded. Only ids, row numbers, the dictionaries and compressed bitmaps of the rows carrying each tag
+ * live on the heap; {@link Product} instances are decoded from their row when read. Tag lookups, tag queries and
+ * facets are answered from those bitmaps, at O(matches) per page since rows are not in id order. Price ranges and
+ * full-text search would need per-product indexes on the heap, so this store rejects them.
+ * <p>
+ * A new version is written to another row and then published, so readers never see a half-written product. Rows
+ * replaced by an update or delete go to a free list and are written again by later saves, and data chunks that have
+ * become mostly garbage are compacted, so steady updates do not grow direct memory. The rows with a value in each chunk
+ * are kept in a bitmap per chunk, so compacting one visits only those rows, and a write compacts at most one chunk.
+ * Readers decode optimistically and retry under a read lock when a recycled row or a compacted chunk was written
+ * while they read.
+ */
+@Repository
+@Qualifier("productStore")
+@ConditionalOnProperty(name = "products.store", havingValue = "offheap")
+public class OffHeapProductRepository implements ProductRepository {
+
+    // Amounts whose unscaled value does not fit in a long are stored as text in the data area.
+    private static final int TEXT_AMOUNT_SCALE = Integer.MIN_VALUE;
+
+    private final ConcurrentNavigableMap<String, Integer> rowsById = new ConcurrentSkipListMap<>();
+    private final RowTagBitmaps rowTagBitmaps = new RowTagBitmaps();
+    private final ModificationCounters modificationCounters = new ModificationCounters();
+    // Rows are only written under this lock; readers find published rows through rowsById without locking.
+    private final Lock writeLock = new ReentrantLock();
+    // Held for writing only while a row or chunk that readers may still be decoding is overwritten or dropped.
+    private final StampedLock recycleLock = new StampedLock();
+    // Rows with a value in each data chunk; only used under the write lock.
+    private final Map<Integer, RoaringBitmap> rowsByChunk = new HashMap<>();
+    private int rowCount;
+    private int[] freeRows = new int[16];
+    private int freeRowCount;
+    // Only changed under the write lock; volatile so it can be read without it.
+    private volatile int productCount;
+
+    private final OffHeapDataArea data = new OffHeapDataArea();
+    private final Dictionary<Currency> currencies = new Dictionary<>();
+    private final Dictionary<Tag> tags = new Dictionary<>();
+    private final OffHeapColumn names = new OffHeapColumn(Long.BYTES);
+    private final OffHeapColumn amountUnscaledValues = new OffHeapColumn(Long.BYTES);
+    private final OffHeapColumn amountScales = new OffHeapColumn(Integer.BYTES);
+    private final OffHeapColumn currencyCodes = new OffHeapColumn(Short.BYTES);
+    private final OffHeapColumn images = new OffHeapColumn(Long.BYTES);
+    private final OffHeapColumn descriptions = new OffHeapColumn(Long.BYTES);
+    private final OffHeapColumn createdAtSeconds = new OffHeapColumn(Long.BYTES);
+    private final OffHeapColumn createdAtNanos = new OffHeapColumn(Integer.BYTES);
+    private final OffHeapColumn tagCodes = new OffHeapColumn(Long.BYTES);
+    private final OffHeapColumn versions = new OffHeapColumn(Long.BYTES);
+    private final List<OffHeapColumn> columns = List.of(names, amountUnscaledValues, amountScales, currencyCodes,
+            images, descriptions, createdAtSeconds, createdAtNanos, tagCodes, versions);
+
+    @Override
+    public void save(Product product) {
+        writeLock.lock();
+        try {
+            Integer existing = rowsById.get(product.getId());
+            store(existing == null ? null : decode(product.getId(), existing), product);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Product findById(String id) {
+        Product product = read(id);
+        if(product == null){
+            throw new ProductNotFoundException();
+        }
+        return product;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        writeLock.lock();
+        try {
+            Integer row = rowsById.get(id);
+            if(row == null){
+                throw new ProductNotFoundException();
+            }
+            Product deleted = decode(id, row);
+            rowTagBitmaps.replace(row, tagsOf(deleted), RowTagBitmaps.NO_ROW, id, Set.of());
+            rowsById.remove(id);
+            release(row);
+            productCount--;
+            modificationCounters.changed(deleted, null);
+            compactSparseChunks();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Product update(Product oldProduct, Product newProduct) {
+        writeLock.lock();
+        try {
+            Integer row = rowsById.get(oldProduct.getId());
+            if(row == null){
+                throw new ProductNotFoundException();
+            }
+            if(versions.getLong(row) != oldProduct.getVersion()){
+                throw new ProductVersionConflictException();
+            }
+            store(decode(oldProduct.getId(), row), newProduct);
+            return newProduct;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean[] applyAll(List<ProductWrite> writes) {
+        writeLock.lock();
+        try {
+            return ProductRepository.super.applyAll(writes);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Stream<Product> getAll() {
+        return rowsById.keySet().stream().map(this::read).filter(Objects::nonNull);
+    }
+
+    @Override
+    public List<Product> getPage(String after, int limit) {
+        Map<String, Integer> fromCursor = after == null ? rowsById : rowsById.tailMap(after, false);
+        return fromCursor.keySet().stream()
+                .map(this::read)
+                .filter(Objects::nonNull)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Product> findByTag(Tag tag) {
+        List<String> ids = rowTagBitmaps.idsWith(tag);
+        Collections.sort(ids);
+        return ids.stream()
+                .map(this::read)
+                .filter(product -> product != null && tagsOf(product).contains(tag))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Product> findByTag(Tag tag, String after, int limit) {
+        return page(rowTagBitmaps.idsWith(tag), after, limit, product -> tagsOf(product).contains(tag));
+    }
+
+    @Override
+    public List<Product> findByTags(TagQuery query, String after, int limit) {
+        return page(rowTagBitmaps.idsMatching(query), after, limit, query::matches);
+    }
+
+    @Override
+    public List<Product> findByPriceRange(Currency currency, BigDecimal min, BigDecimal max) {
+        throw new UnsupportedProductQueryException();
+    }
+
+    @Override
+    public List<Product> search(String query, int limit) {
+        throw new UnsupportedProductQueryException();
+    }
+
+    @Override
+    public Map<Tag, Integer> tagFacets(Tag within, int limit) {
+        return rowTagBitmaps.top(within, limit);
+    }
+
+    @Override
+    public long modificationCount() {
+        return modificationCounters.global();
+    }
+
+    @Override
+    public long modificationCount(Tag tag) {
+        return modificationCounters.forTag(tag);
+    }
+
+    @Override
+    public int size() {
+        return productCount;
+    }
+
+    @Override
+    public int tagCount() {
+        return rowTagBitmaps.tagCount();
+    }
+
+    /**
+     * Returns up to {@code limit} of the products with the given ids that still match, in id order after
+     * {@code after}. Ids are picked a page at a time with a bounded heap rather than sorting every match, and a
+     * product that changed since its id was taken is skipped and made up for from the next ids.
+     */
+    private List<Product> page(List<String> ids, String after, int limit, Predicate<Product> matches) {
+        List<Product> page = new ArrayList<>();
+        String cursor = after;
+        while (page.size() < limit) {
+            List<String> next = smallestAfter(ids, cursor, limit - page.size());
+            if (next.isEmpty()) {
+                break;
+            }
+            for (String id : next) {
+                Product product = read(id);
+                if (product != null && matches.test(product)) {
+                    page.add(product);
+                }
+            }
+            cursor = next.get(next.size() - 1);
+        }
+        return page;
+    }
+
+    private static List<String> smallestAfter(List<String> ids, String after, int count) {
+        PriorityQueue<String> smallest = new PriorityQueue<>(Comparator.reverseOrder());
+        for (String id : ids) {
+            if (after != null && id.compareTo(after) <= 0) {
+                continue;
+            }
+            if (smallest.size() < count) {
+                smallest.add(id);
+            } else if (id.compareTo(smallest.peek()) < 0) {
+                smallest.poll();
+                smallest.add(id);
+            }
+        }
+        List<String> next = new ArrayList<>(smallest);
+        Collections.sort(next);
+        return next;
+    }
+
+    private static Set<Tag> tagsOf(Product product) {
+        return product.getTags().orElse(Set.of());
+    }
+
+    private void store(Product oldProduct, Product product) {
+        boolean recycled = freeRowCount > 0;
+        int row = recycled ? freeRows[--freeRowCount] : rowCount++;
+        if (recycled) {
+            long stamp = recycleLock.writeLock();
+            try {
+                write(row, product);
+            } finally {
+                recycleLock.unlockWrite(stamp);
+            }
+        } else {
+            for (OffHeapColumn column : columns) {
+                column.ensureCapacity(row + 1);
+            }
+            write(row, product);
+        }
+        Integer previous = rowsById.get(product.getId());
+        rowTagBitmaps.replace(previous == null ? RowTagBitmaps.NO_ROW : previous,
+                oldProduct == null ? Set.of() : tagsOf(oldProduct), row, product.getId(), tagsOf(product));
+        Integer replaced = rowsById.put(product.getId(), row);
+        if (replaced != null) {
+            release(replaced);
+        }
+        if (oldProduct == null) {
+            productCount++;
+        }
+        modificationCounters.changed(oldProduct, product);
+        compactSparseChunks();
+    }
+
+    private void write(int row, Product product) {
+        names.putLong(row, data.putString(product.getName()));
+        BigDecimal amount = product.getPrice().getAmount();
+        if (amount.unscaledValue().bitLength() < Long.SIZE) {
+            amountUnscaledValues.putLong(row, amount.unscaledValue().longValue());
+            amountScales.putInt(row, amount.scale());
+        } else {
+            amountUnscaledValues.putLong(row, data.putString(amount.toString()));
+            amountScales.putInt(row, TEXT_AMOUNT_SCALE);
+        }
+        currencyCodes.putShort(row, (short) currencies.encode(product.getPrice().getCurrency()));
+        images.putLong(row, data.putString(product.getImage().map(Image::getUrl).orElse(null)));
+        descriptions.putLong(row, data.putString(product.getDescription().map(Description::getText).orElse(null)));
+        createdAtSeconds.putLong(row, product.getCreatedAt().toEpochSecond(ZoneOffset.UTC));
+        createdAtNanos.putInt(row, product.getCreatedAt().getNano());
+        tagCodes.putLong(row, data.putInts(product.getTags().orElse(Set.of()).stream().mapToInt(tags::encode)
+                .toArray()));
+        versions.putLong(row, product.getVersion());
+        track(row);
+    }
+
+    // The row's values become garbage, but stay readable until their chunk is compacted.
+    private void release(int row) {
+        untrack(row);
+        data.releaseString(names.getLong(row));
+        if (amountScales.getInt(row) == TEXT_AMOUNT_SCALE) {
+            data.releaseString(amountUnscaledValues.getLong(row));
+        }
+        data.releaseString(images.getLong(row));
+        data.releaseString(descriptions.getLong(row));
+        data.releaseInts(tagCodes.getLong(row));
+        if (freeRowCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeRowCount * 2);
+        }
+        freeRows[freeRowCount++] = row;
+    }
+
+    // Live values are copied to the end of the area first; only repointing the rows and dropping the chunk happen
+    // while readers are held off. One chunk at most per write keeps the work a write does bounded by the chunk size.
+    private void compactSparseChunks() {
+        int chunk = data.nextSparseChunk();
+        if (chunk < 0) {
+            return;
+        }
+        RoaringBitmap rowsInChunk = rowsByChunk.remove(chunk);
+        int[] rows = rowsInChunk == null ? new int[0] : rowsInChunk.toArray();
+        List<Runnable> repoints = new ArrayList<>();
+        for (int row : rows) {
+            moveString(names, row, chunk, repoints);
+            if (amountScales.getInt(row) == TEXT_AMOUNT_SCALE) {
+                moveString(amountUnscaledValues, row, chunk, repoints);
+            }
+            moveString(images, row, chunk, repoints);
+            moveString(descriptions, row, chunk, repoints);
+            long tagReference = tagCodes.getLong(row);
+            if (data.isIn(tagReference, chunk)) {
+                long moved = data.putInts(data.getInts(tagReference));
+                repoints.add(() -> tagCodes.putLong(row, moved));
+            }
+        }
+        long stamp = recycleLock.writeLock();
+        try {
+            repoints.forEach(Runnable::run);
+            data.drop(chunk);
+        } finally {
+            recycleLock.unlockWrite(stamp);
+        }
+        for (int row : rows) {
+            track(row);
+        }
+    }
+
+    private void track(int row) {
+        forEachReference(row, reference -> rowsByChunk.computeIfAbsent(OffHeapDataArea.chunkOf(reference),
+                chunk -> new RoaringBitmap()).add(row));
+    }
+
+    private void untrack(int row) {
+        forEachReference(row, reference -> {
+            RoaringBitmap rows = rowsByChunk.get(OffHeapDataArea.chunkOf(reference));
+            if (rows != null) {
+                rows.remove(row);
+            }
+        });
+    }
+
+    private void forEachReference(int row, LongConsumer action) {
+        long textAmount = amountScales.getInt(row) == TEXT_AMOUNT_SCALE ? amountUnscaledValues.getLong(row)
+                : OffHeapDataArea.NULL_REFERENCE;
+        for (long reference : new long[]{names.getLong(row), textAmount, images.getLong(row),
+                descriptions.getLong(row), tagCodes.getLong(row)}) {
+            if (reference != OffHeapDataArea.NULL_REFERENCE) {
+                action.accept(reference);
+            }
+        }
+    }
+
+    private void moveString(OffHeapColumn column, int row, int chunk, List<Runnable> repoints) {
+        long reference = column.getLong(row);
+        if (data.isIn(reference, chunk)) {
+            long moved = data.putString(data.getString(reference));
+            repoints.add(() -> column.putLong(row, moved));
+        }
+    }
+
+    /**
+     * Decodes the current version of a product, or returns null when there is none. A row recycled or a chunk
+     * compacted while it was being decoded fails validation, or decoding itself, and the read is repeated under the
+     * read lock, looking the row up again.
+     */
+    private Product read(String id) {
+        long stamp = recycleLock.tryOptimisticRead();
+        try {
+            Integer row = rowsById.get(id);
+            Product product = row == null ? null : decode(id, row);
+            if (recycleLock.validate(stamp)) {
+                return product;
+            }
+        } catch (RuntimeException e) {
+            // decoded a row while it was rewritten; retried below
+        }
+        stamp = recycleLock.readLock();
+        try {
+            Integer row = rowsById.get(id);
+            return row == null ? null : decode(id, row);
+        } finally {
+            recycleLock.unlockRead(stamp);
+        }
+    }
+
+    // Only safe for writers, or for readers that validate what they decoded.
+    private Product decode(String id, int row) {
+        long unscaledValue = amountUnscaledValues.getLong(row);
+        int scale = amountScales.getInt(row);
+        BigDecimal amount = scale == TEXT_AMOUNT_SCALE ? new BigDecimal(data.getString(unscaledValue))
+                : new BigDecimal(BigInteger.valueOf(unscaledValue), scale);
+        String image = data.getString(images.getLong(row));
+        String description = data.getString(descriptions.getLong(row));
+        Set<Tag> productTags = new HashSet<>();
+        for (int code : data.getInts(tagCodes.getLong(row))) {
+            productTags.add(tags.decode(code));
+        }
+        return Product.build()
+                .withId(id)
+                .withName(data.getString(names.getLong(row)))
+                .withPrice(Price.build(amount, currencies.decode(currencyCodes.getShort(row))))
+                .withCreatedAt(LocalDateTime.ofEpochSecond(createdAtSeconds.getLong(row), createdAtNanos.getInt(row),
+                        ZoneOffset.UTC))
+                .withImage(image == null ? null : Image.build(image))
+                .withDescription(description == null ? null : Description.build(description))
+                .withTags(productTags)
+                .withVersion(versions.getLong(row))
+                .build();
+    }
+
+    int allocatedRows() {
+        return rowCount;
+    }
+
+    long allocatedDataBytes() {
+        return data.allocatedBytes();
+    }
+}
@@ -0,0 +1,114 @@
+package pl.zaradny.springApp.infrastructure;
+
+import pl.zaradny.springApp.domain.Price;
+import pl.zaradny.springApp.domain.Product;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+/**
+ * Per-currency index of product ids ordered by price amount, so a price range is a skip list sub-set scan.
+ * Callers must serialize changes to one product, as the repositories do inside their per-id write sections.
+ */
+class PriceIndex {
+
+    private final ConcurrentMap<Currency, NavigableSet<Entry>> entriesByCurrency = new ConcurrentHashMap<>();
+
+    void replace(Product oldProduct, Product newProduct) {
+        if (oldProduct != null && newProduct != null && oldProduct.getPrice().equals(newProduct.getPrice())) {
+            return;
+        }
+        if (oldProduct != null) {
+            entries(oldProduct.getPrice().getCurrency()).remove(Entry.of(oldProduct));
+        }
+        if (newProduct != null) {
+            entries(newProduct.getPrice().getCurrency()).add(Entry.of(newProduct));
+        }
+    }
+
+    /**
+     * Returns ids of products priced in the currency between {@code min} and {@code max} inclusive, cheapest first.
+     * A null bound leaves that side of the range open.
+     */
+    List<String> productIdsInRange(Currency currency, BigDecimal min, BigDecimal max) {
+        NavigableSet<Entry> entries = entriesByCurrency.get(currency);
+        if (entries == null || (min != null && max != null && min.compareTo(max) > 0)) {
+            return Collections.emptyList();
+        }
+        NavigableSet<Entry> range = entries;
+        if (min != null) {
+            range = range.tailSet(Entry.lowerBound(min), true);
+        }
+        if (max != null) {
+            range = range.headSet(Entry.upperBound(max), true);
+        }
+        return range.stream().map(entry -> entry.productId).collect(Collectors.toList());
+    }
+
+    // Readers re-check what they resolved, as the index is changed just before the product itself is stored.
+    static boolean isInRange(Price price, Currency currency, BigDecimal min, BigDecimal max) {
+        return price.getCurrency().equals(currency)
+                && (min == null || price.getAmount().compareTo(min) >= 0)
+                && (max == null || price.getAmount().compareTo(max) <= 0);
+    }
+
+    private NavigableSet<Entry> entries(Currency currency) {
+        return entriesByCurrency.computeIfAbsent(currency, key -> new ConcurrentSkipListSet<>());
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private static final int LOWER_BOUND = -1;
+        private static final int PRODUCT = 0;
+        private static final int UPPER_BOUND = 1;
+
+        private final BigDecimal amount;
+        // Bounds sort before or after every product with the same amount, whatever its id.
+        private final int kind;
+        private final String productId;
+
+        private Entry(BigDecimal amount, int kind, String productId) {
+            this.amount = amount;
+            this.kind = kind;
+            this.productId = productId;
+        }
+
+        static Entry of(Product product) {
+            return new Entry(product.getPrice().getAmount(), PRODUCT, product.getId());
+        }
+
+        static Entry lowerBound(BigDecimal amount) {
+            return new Entry(amount, LOWER_BOUND, "");
+        }
+
+        static Entry upperBound(BigDecimal amount) {
+            return new Entry(amount, UPPER_BOUND, "");
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byAmount = amount.compareTo(other.amount);
+            if (byAmount != 0) {
+                return byAmount;
+            }
+            int byKind = Integer.compare(kind, other.kind);
+            return byKind != 0 ? byKind : productId.compareTo(other.productId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return compareTo((Entry) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(amount.stripTrailingZeros(), kind, productId);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package pl.zaradny.springApp.infrastructure;
+
+import pl.zaradny.springApp.domain.*;
+import pl.zaradny.springApp.exceptions.TooLargeProductException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of product writes. Each record is framed as {@code [int length][int crc32][payload]}; a torn or
+ * corrupted tail left by a crash is detected on replay and truncated away, as is a record whose payload ends early
+ * or runs past its last field. Replay treats a record longer than {@link #MAX_RECORD_SIZE} as corrupt, so such
+ * records are refused before anything is written.
+ */
+class ProductLog implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+
+    private final FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final ScheduledExecutorService syncScheduler;
+    private final Object syncLock = new Object();
+    private volatile long writtenPosition;
+    private long syncedPosition;
+
+    private ProductLog(FileChannel channel, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        this.channel = channel;
+        this.fsyncPolicy = fsyncPolicy;
+        this.writtenPosition = channel.position();
+        this.syncedPosition = writtenPosition;
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "product-log-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncScheduler.scheduleWithFixedDelay(() -> sync(writtenPosition), fsyncIntervalMillis,
+                    fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncScheduler = null;
+        }
+    }
+
+    /**
+     * Opens the log at the given path, feeding every intact record to the replay callbacks before returning.
+     */
+    static ProductLog open(Path path, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+                           Consumer<Product> replaySave, Consumer<String> replayDelete) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long end = replay(channel, replaySave, replayDelete);
+            channel.truncate(end);
+            channel.position(end);
+            return new ProductLog(channel, fsyncPolicy, fsyncIntervalMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends a record without waiting for it to be durable. Callers must serialize appends and then call
+     * {@link #awaitDurable(long)} with the returned position once they no longer hold their lock.
+     */
+    long appendSave(Product product) {
+        return append(prepareSave(product));
+    }
+
+    long appendDelete(String id) {
+        return append(prepareDelete(id));
+    }
+
+    /**
+     * Encodes a record to be appended later, so every record of a batch can be checked before any of it is written.
+     */
+    Frame prepareSave(Product product) {
+        return frame(encodeSave(product));
+    }
+
+    Frame prepareDelete(String id) {
+        ByteBuffer payload = ByteBuffer.allocate(1 + sizeOf(id));
+        payload.put(DELETE);
+        putString(payload, id);
+        return frame(payload);
+    }
+
+    void awaitDurable(long position) {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            sync(position);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncScheduler != null) {
+            syncScheduler.shutdownNow();
+        }
+        sync(writtenPosition);
+        channel.close();
+    }
+
+    long append(Frame frame) {
+        ByteBuffer bytes = frame.bytes.duplicate();
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            writtenPosition = channel.position();
+            return writtenPosition;
+        } catch (IOException e) {
+            // A partly written record would hide every record appended after it from replay.
+            try {
+                channel.truncate(writtenPosition);
+                channel.position(writtenPosition);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Frame frame(ByteBuffer payload) {
+        payload.flip();
+        if (payload.remaining() > MAX_RECORD_SIZE) {
+            throw new TooLargeProductException();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE + payload.remaining());
+        bytes.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload).flip();
+        return new Frame(bytes);
+    }
+
+    // Whoever forces first covers every record written so far, so writers queued behind it return without forcing.
+    private void sync(long position) {
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                return;
+            }
+            long target = writtenPosition;
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            syncedPosition = target;
+        }
+    }
+
+    private static long replay(FileChannel channel, Consumer<Product> replaySave, Consumer<String> replayDelete)
+            throws IOException {
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE || position + HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, position + HEADER_SIZE);
+            payload.flip();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            byte type = payload.get();
+            if (type != SAVE && type != DELETE) {
+                break;
+            }
+            Product saved;
+            String deletedId;
+            try {
+                saved = type == SAVE ? decodeSave(payload) : null;
+                deletedId = type == DELETE ? getString(payload) : null;
+            } catch (BufferUnderflowException e) {
+                // A record ending before its last field is as corrupt as one failing its checksum.
+                break;
+            }
+            if (payload.hasRemaining()) {
+                break;
+            }
+            if (saved != null) {
+                replaySave.accept(saved);
+            } else {
+                replayDelete.accept(deletedId);
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of product log");
+            }
+        }
+    }
+
+    private static ByteBuffer encodeSave(Product product) {
+        String image = product.getImage().map(Image::getUrl).orElse(null);
+        String description = product.getDescription().map(Description::getText).orElse(null);
+        Set<String> tags = product.getTags().orElse(Set.of()).stream().map(Tag::getName).collect(Collectors.toSet());
+        String amount = product.getPrice().getAmount().toString();
+        String currency = product.getPrice().getCurrency().getCurrencyCode();
+        int size = 1 + sizeOf(product.getId()) + sizeOf(product.getName()) + sizeOf(amount) + sizeOf(currency)
+                + sizeOf(image) + sizeOf(description) + Long.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES;
+        for (String tag : tags) {
+            size += sizeOf(tag);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.put(SAVE);
+        putString(payload, product.getId());
+        putString(payload, product.getName());
+        putString(payload, amount);
+        putString(payload, currency);
+        putString(payload, image);
+        putString(payload, description);
+        payload.putLong(product.getCreatedAt().toEpochSecond(ZoneOffset.UTC));
+        payload.putInt(product.getCreatedAt().getNano());
+        payload.putInt(tags.size());
+        for (String tag : tags) {
+            putString(payload, tag);
+        }
+        payload.putLong(product.getVersion());
+        return payload;
+    }
+
+    private static Product decodeSave(ByteBuffer payload) {
+        String id = getString(payload);
+        String name = getString(payload);
+        String amount = getString(payload);
+        String currency = getString(payload);
+        String image = getString(payload);
+        String description = getString(payload);
+        LocalDateTime createdAt = LocalDateTime.ofEpochSecond(payload.getLong(), payload.getInt(), ZoneOffset.UTC);
+        int tagCount = payload.getInt();
+        Set<Tag> tags = new HashSet<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            tags.add(Tag.build(getString(payload)));
+        }
+        long version = payload.getLong();
+        return Product.build()
+                .withId(id)
+                .withName(name)
+                .withPrice(Price.build(amount, currency))
+                .withCreatedAt(createdAt)
+                .withImage(image == null ? null : Image.build(image))
+                .withDescription(description == null ? null : Description.build(description))
+                .withTags(tags)
+                .withVersion(version)
+                .build();
+    }
+
+    // Strings are stored as [int byteLength][utf-8 bytes], with a length of -1 for null.
+    private static int sizeOf(String value) {
+        return Integer.BYTES + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A record framed for the log, checked against the size limit and ready to be appended.
+     */
+    static final class Frame {
+
+        private final ByteBuffer bytes;
+
+        private Frame(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -2,8 +2,15 @@ package pl.zaradny.springApp.infrastructure;
 
 import pl.zaradny.springApp.domain.Product;
 import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.domain.TagQuery;
+import pl.zaradny.springApp.exceptions.ProductNotFoundException;
+import pl.zaradny.springApp.exceptions.ProductVersionConflictException;
 
+import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface ProductRepository {
 
@@ -13,9 +20,108 @@ public interface ProductRepository {
 
     void deleteById(String id);
 
+    /**
+     * Replaces the product only if the stored one still has the version of {@code oldProduct}; otherwise throws
+     * {@link ProductVersionConflictException} and leaves the store untouched.
+     */
     Product update(Product oldProduct, Product newProduct);
 
-    List<Product> getAll();
+    /**
+     * Applies the writes in order and reports, per write, whether it was applied. An update or delete of
+     * a product that does not exist, or an update of a product that has changed since, is skipped instead of
+     * failing the rest of the batch.
+     */
+    default boolean[] applyAll(List<ProductWrite> writes) {
+        boolean[] applied = new boolean[writes.size()];
+        for (int i = 0; i < writes.size(); i++) {
+            ProductWrite write = writes.get(i);
+            try {
+                switch (write.getType()) {
+                    case SAVE:
+                        save(write.getProduct());
+                        break;
+                    case UPDATE:
+                        update(write.getOldProduct(), write.getProduct());
+                        break;
+                    case DELETE:
+                        deleteById(write.getId());
+                        break;
+                }
+                applied[i] = true;
+            } catch (ProductNotFoundException | ProductVersionConflictException e) {
+                applied[i] = false;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Streams every product in id order. The stream is weakly consistent: it reflects some state of the store
+     * at or after the call and never blocks concurrent writers.
+     */
+    Stream<Product> getAll();
+
+    /**
+     * Returns up to {@code limit} products ordered by id, starting right after the {@code after} id
+     * or from the first product when {@code after} is null.
+     */
+    List<Product> getPage(String after, int limit);
 
     List<Product> findByTag(Tag tag);
+
+    /**
+     * Same as {@link #getPage(String, int)} but restricted to products carrying the given tag.
+     */
+    List<Product> findByTag(Tag tag, String after, int limit);
+
+    /**
+     * Same as {@link #getPage(String, int)} but restricted to products matching the tag query.
+     */
+    List<Product> findByTags(TagQuery query, String after, int limit);
+
+    /**
+     * Returns products priced in the given currency between {@code min} and {@code max} inclusive, cheapest first.
+     * A null bound leaves that side of the range open.
+     */
+    List<Product> findByPriceRange(Currency currency, BigDecimal min, BigDecimal max);
+
+    /**
+     * Returns up to {@code limit} products whose name or description contains any term of the query,
+     * ranked by relevance.
+     */
+    List<Product> search(String query, int limit);
+
+    /**
+     * Returns up to {@code limit} tags with the number of stored products carrying each, most common first and
+     * ties by name. With a {@code within} tag only products carrying it are counted, and that tag is left out.
+     */
+    Map<Tag, Integer> tagFacets(Tag within, int limit);
+
+    /**
+     * Number of writes applied so far. It grows after every write becomes visible, so reading it before a listing
+     * gives a version that is never newer than the listing.
+     */
+    long modificationCount();
+
+    /**
+     * Same as {@link #modificationCount()} but only counting writes to products that carried the tag before or after.
+     */
+    long modificationCount(Tag tag);
+
+    /**
+     * Number of products currently stored.
+     */
+    int size();
+
+    /**
+     * Number of distinct tags carried by at least one stored product.
+     */
+    int tagCount();
+
+    /**
+     * Whether writes may block the calling thread on I/O, so non-blocking callers must hand them to another thread.
+     */
+    default boolean hasBlockingWrites() {
+        return false;
+    }
 }
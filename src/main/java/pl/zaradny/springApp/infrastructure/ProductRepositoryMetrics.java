@@ -0,0 +1,30 @@
+package pl.zaradny.springApp.infrastructure;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the catalog size and tag cardinality of whichever store is active. Both are read when metrics are
+ * scraped, so writes pay nothing for them. Per-operation timings come from {@link MeteredProductRepository}.
+ */
+@Component
+class ProductRepositoryMetrics implements MeterBinder {
+
+    private final ProductRepository productRepository;
+
+    ProductRepositoryMetrics(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("products.catalog.size", productRepository, ProductRepository::size)
+                .description("Products currently stored")
+                .register(registry);
+        Gauge.builder("products.tags", productRepository, ProductRepository::tagCount)
+                .description("Distinct tags carried by stored products")
+                .register(registry);
+    }
+}
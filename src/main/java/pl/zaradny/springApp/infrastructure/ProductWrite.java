@@ -0,0 +1,51 @@
+package pl.zaradny.springApp.infrastructure;
+
+import pl.zaradny.springApp.domain.Product;
+
+/**
+ * A single save, update or delete handed to {@link ProductRepository#applyAll(java.util.List)}.
+ */
+public final class ProductWrite {
+
+    public enum Type { SAVE, UPDATE, DELETE }
+
+    private final Type type;
+    private final String id;
+    private final Product oldProduct;
+    private final Product product;
+
+    private ProductWrite(Type type, String id, Product oldProduct, Product product) {
+        this.type = type;
+        this.id = id;
+        this.oldProduct = oldProduct;
+        this.product = product;
+    }
+
+    public static ProductWrite save(Product product) {
+        return new ProductWrite(Type.SAVE, product.getId(), null, product);
+    }
+
+    public static ProductWrite update(Product oldProduct, Product newProduct) {
+        return new ProductWrite(Type.UPDATE, oldProduct.getId(), oldProduct, newProduct);
+    }
+
+    public static ProductWrite delete(String id) {
+        return new ProductWrite(Type.DELETE, id, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Product getOldProduct() {
+        return oldProduct;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+}
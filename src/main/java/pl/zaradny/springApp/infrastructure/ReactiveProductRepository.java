@@ -0,0 +1,46 @@
+package pl.zaradny.springApp.infrastructure;
+
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.exceptions.ProductNotFoundException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link ProductRepository}. Failures are signalled as errors with the same exceptions.
+ */
+public interface ReactiveProductRepository {
+
+    Mono<Void> save(Product product);
+
+    /**
+     * Emits the product or fails with {@link ProductNotFoundException}.
+     */
+    Mono<Product> findById(String id);
+
+    Mono<Void> deleteById(String id);
+
+    /**
+     * Same compare-and-set contract as {@link ProductRepository#update(Product, Product)}.
+     */
+    Mono<Product> update(Product oldProduct, Product newProduct);
+
+    /**
+     * Emits every product in id order, reading the store only as fast as the subscriber requests.
+     */
+    Flux<Product> getAll();
+
+    /**
+     * Same as {@link #getAll()} but restricted to products carrying the given tag.
+     */
+    Flux<Product> findByTag(Tag tag);
+
+    Flux<Product> search(String query, int limit);
+
+    /**
+     * Same as {@link ProductRepository#modificationCount()}; reading the counter never blocks.
+     */
+    long modificationCount();
+
+    long modificationCount(Tag tag);
+}
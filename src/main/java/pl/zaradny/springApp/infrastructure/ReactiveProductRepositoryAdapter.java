@@ -0,0 +1,91 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.springframework.stereotype.Component;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Exposes the active {@link ProductRepository} as a {@link ReactiveProductRepository}. Reads never block, so they run
+ * on the subscriber's thread. Writes move to the elastic scheduler only when the store may block on them.
+ * Listings are read a page at a time and the next page is only read once the subscriber asks for more.
+ */
+@Component
+public class ReactiveProductRepositoryAdapter implements ReactiveProductRepository {
+
+    static final int PAGE_SIZE = 256;
+
+    private final ProductRepository delegate;
+    private final Scheduler writeScheduler;
+
+    public ReactiveProductRepositoryAdapter(ProductRepository delegate) {
+        this.delegate = delegate;
+        this.writeScheduler = delegate.hasBlockingWrites() ? Schedulers.elastic() : Schedulers.immediate();
+    }
+
+    @Override
+    public Mono<Void> save(Product product) {
+        return Mono.<Void>fromRunnable(() -> delegate.save(product)).subscribeOn(writeScheduler);
+    }
+
+    @Override
+    public Mono<Product> findById(String id) {
+        return Mono.fromCallable(() -> delegate.findById(id));
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return Mono.<Void>fromRunnable(() -> delegate.deleteById(id)).subscribeOn(writeScheduler);
+    }
+
+    @Override
+    public Mono<Product> update(Product oldProduct, Product newProduct) {
+        return Mono.fromCallable(() -> delegate.update(oldProduct, newProduct)).subscribeOn(writeScheduler);
+    }
+
+    @Override
+    public Flux<Product> getAll() {
+        return pages(after -> delegate.getPage(after, PAGE_SIZE));
+    }
+
+    @Override
+    public Flux<Product> findByTag(Tag tag) {
+        return pages(after -> delegate.findByTag(tag, after, PAGE_SIZE));
+    }
+
+    @Override
+    public Flux<Product> search(String query, int limit) {
+        return Mono.fromCallable(() -> delegate.search(query, limit)).flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public long modificationCount() {
+        return delegate.modificationCount();
+    }
+
+    @Override
+    public long modificationCount(Tag tag) {
+        return delegate.modificationCount(tag);
+    }
+
+    // One page is read per request for more, continuing after the last id emitted, like a client paging with cursors.
+    private static Flux<Product> pages(Function<String, List<Product>> pageAfter) {
+        return Flux.<List<Product>, String[]>generate(() -> new String[1], (after, sink) -> {
+            List<Product> page = pageAfter.apply(after[0]);
+            if (!page.isEmpty()) {
+                sink.next(page);
+                after[0] = page.get(page.size() - 1).getId();
+            }
+            if (page.size() < PAGE_SIZE) {
+                sink.complete();
+            }
+            return after;
+        }).concatMapIterable(Function.identity());
+    }
+}
@@ -0,0 +1,182 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.domain.TagQuery;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tag index of {@link OffHeapProductRepository}: a compressed bitmap of the rows carrying each tag and the id stored
+ * in each row. It holds a few bytes per tagged product and no object per product, so tag queries do not bring the
+ * catalog back onto the heap. Rows are not in id order, so callers order what they get by id themselves.
+ * Writers must be serialized, as they are under the repository's write lock; readers see every write as a whole.
+ */
+class RowTagBitmaps {
+
+    static final int NO_ROW = -1;
+
+    private static final Comparator<Map.Entry<Tag, Integer>> MOST_COMMON_LAST =
+            Map.Entry.<Tag, Integer>comparingByValue().thenComparing(entry -> entry.getKey().getName(), Comparator.reverseOrder());
+
+    private final Map<Tag, RoaringBitmap> rowsByTag = new HashMap<>();
+    private final RoaringBitmap liveRows = new RoaringBitmap();
+    private String[] idsByRow = new String[16];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Moves a product from {@code oldRow} to {@code newRow}; either is {@link #NO_ROW} on save and delete.
+     */
+    void replace(int oldRow, Set<Tag> oldTags, int newRow, String id, Set<Tag> newTags) {
+        lock.writeLock().lock();
+        try {
+            if (oldRow != NO_ROW) {
+                liveRows.remove(oldRow);
+                idsByRow[oldRow] = null;
+                for (Tag tag : oldTags) {
+                    RoaringBitmap rows = rowsByTag.get(tag);
+                    rows.remove(oldRow);
+                    if (rows.isEmpty()) {
+                        rowsByTag.remove(tag);
+                    }
+                }
+            }
+            if (newRow != NO_ROW) {
+                if (newRow >= idsByRow.length) {
+                    idsByRow = Arrays.copyOf(idsByRow, Math.max(newRow + 1, idsByRow.length * 2));
+                }
+                idsByRow[newRow] = id;
+                liveRows.add(newRow);
+                for (Tag tag : newTags) {
+                    rowsByTag.computeIfAbsent(tag, key -> new RoaringBitmap()).add(newRow);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the products carrying the tag, in no particular order.
+     */
+    List<String> idsWith(Tag tag) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap rows = rowsByTag.get(tag);
+            return rows == null ? Collections.emptyList() : ids(rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the products matching the query, in no particular order.
+     */
+    List<String> idsMatching(TagQuery query) {
+        lock.readLock().lock();
+        try {
+            return ids(matching(query));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Same as {@link TagFacets#top(Tag, int)}, counting from the bitmaps: tags are visited from the most common
+     * down and the visit stops once no remaining tag can make it into the result.
+     */
+    Map<Tag, Integer> top(Tag within, int limit) {
+        PriorityQueue<Map.Entry<Tag, Integer>> best = new PriorityQueue<>(MOST_COMMON_LAST);
+        lock.readLock().lock();
+        try {
+            RoaringBitmap withinRows = within == null ? null : rowsByTag.get(within);
+            if (within == null || withinRows != null) {
+                List<Map.Entry<Tag, Integer>> candidates = new ArrayList<>();
+                rowsByTag.forEach((tag, rows) -> candidates.add(new AbstractMap.SimpleImmutableEntry<>(tag,
+                        rows.getCardinality())));
+                candidates.sort(MOST_COMMON_LAST.reversed());
+                for (Map.Entry<Tag, Integer> candidate : candidates) {
+                    if (best.size() == limit && candidate.getValue() < best.peek().getValue()) {
+                        break;
+                    }
+                    if (candidate.getKey().equals(within)) {
+                        continue;
+                    }
+                    int count = withinRows == null ? candidate.getValue()
+                            : RoaringBitmap.andCardinality(withinRows, rowsByTag.get(candidate.getKey()));
+                    if (count > 0) {
+                        best.add(new AbstractMap.SimpleImmutableEntry<>(candidate.getKey(), count));
+                        if (best.size() > limit) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        LinkedList<Map.Entry<Tag, Integer>> ranked = new LinkedList<>();
+        while (!best.isEmpty()) {
+            ranked.addFirst(best.poll());
+        }
+        Map<Tag, Integer> facets = new LinkedHashMap<>();
+        ranked.forEach(entry -> facets.put(entry.getKey(), entry.getValue()));
+        return facets;
+    }
+
+    int tagCount() {
+        lock.readLock().lock();
+        try {
+            return rowsByTag.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap matching(TagQuery query) {
+        RoaringBitmap result;
+        if (query.getIncluded().isEmpty()) {
+            result = liveRows.clone();
+        } else if (query.getMatch() == TagQuery.Match.ALL) {
+            result = null;
+            for (Tag tag : query.getIncluded()) {
+                RoaringBitmap rows = rowsByTag.get(tag);
+                if (rows == null) {
+                    return new RoaringBitmap();
+                }
+                if (result == null) {
+                    result = rows.clone();
+                } else {
+                    result.and(rows);
+                }
+            }
+        } else {
+            result = new RoaringBitmap();
+            for (Tag tag : query.getIncluded()) {
+                RoaringBitmap rows = rowsByTag.get(tag);
+                if (rows != null) {
+                    result.or(rows);
+                }
+            }
+        }
+        for (Tag tag : query.getExcluded()) {
+            RoaringBitmap rows = rowsByTag.get(tag);
+            if (rows != null) {
+                result.andNot(rows);
+            }
+        }
+        return result;
+    }
+
+    private List<String> ids(RoaringBitmap rows) {
+        List<String> ids = new ArrayList<>(rows.getCardinality());
+        IntIterator iterator = rows.getIntIterator();
+        while (iterator.hasNext()) {
+            ids.add(idsByRow[iterator.next()]);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,251 @@
+package pl.zaradny.springApp.infrastructure;
+
+import pl.zaradny.springApp.domain.Description;
+import pl.zaradny.springApp.domain.Product;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inverted index from the terms of a product's name and description to the ids of products containing them,
+ * with the number of occurrences in each product. Results are ranked by tf-idf.
+ * Each term keeps its postings ordered by impact, highest term frequency first, so a query reads only as far down
+ * the lists as it takes to be sure nothing further down can reach its top results.
+ * Callers must serialize changes to one product, as the repositories do inside their per-id write sections.
+ */
+class SearchIndex {
+
+    private final ConcurrentMap<String, Postings> postings = new ConcurrentHashMap<>();
+    private final AtomicInteger indexedProducts = new AtomicInteger();
+
+    void replace(Product oldProduct, Product newProduct) {
+        Map<String, Integer> oldTerms = termFrequencies(oldProduct);
+        Map<String, Integer> newTerms = termFrequencies(newProduct);
+        for (String term : oldTerms.keySet()) {
+            if (!newTerms.containsKey(term)) {
+                remove(term, oldProduct.getId());
+            }
+        }
+        newTerms.forEach((term, frequency) -> {
+            if (!frequency.equals(oldTerms.get(term))) {
+                add(term, newProduct.getId(), frequency);
+            }
+        });
+        if (oldProduct == null && newProduct != null) {
+            indexedProducts.incrementAndGet();
+        } else if (oldProduct != null && newProduct == null) {
+            indexedProducts.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns ids of up to {@code limit} products matching any term of the query, best match first.
+     */
+    List<String> search(String query, int limit) {
+        // Threshold algorithm: the lists are read in turn, highest impact first, and every product met is scored in
+        // full. A product not met yet scores at most the sum of the impacts at the current positions.
+        double documents = Math.max(1, indexedProducts.get());
+        List<Cursor> cursors = new ArrayList<>();
+        for (String term : tokenize(query).keySet()) {
+            Postings matches = postings.get(term);
+            if (matches != null) {
+                cursors.add(new Cursor(matches, Math.log(1 + documents / Math.max(1, matches.size()))));
+            }
+        }
+        PriorityQueue<ScoredId> best = new PriorityQueue<>(limit + 1);
+        Set<String> scored = new HashSet<>();
+        while (!cursors.isEmpty()) {
+            for (Iterator<Cursor> iterator = cursors.iterator(); iterator.hasNext(); ) {
+                Cursor cursor = iterator.next();
+                Posting posting = cursor.advance();
+                if (posting == null) {
+                    iterator.remove();
+                } else if (scored.add(posting.productId)) {
+                    best.add(new ScoredId(posting.productId, score(posting.productId, cursors)));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+            if (best.size() == limit && cannotBeOvertaken(best.peek(), cursors)) {
+                break;
+            }
+        }
+        LinkedList<String> ranked = new LinkedList<>();
+        while (!best.isEmpty()) {
+            ranked.addFirst(best.poll().productId);
+        }
+        return ranked;
+    }
+
+    // Lists already read to the end no longer have cursors, and contribute nothing to products not met yet.
+    private double score(String productId, List<Cursor> cursors) {
+        double score = 0;
+        for (Cursor cursor : cursors) {
+            Integer frequency = cursor.postings.frequencies.get(productId);
+            if (frequency != null) {
+                score += impact(frequency) * cursor.inverseDocumentFrequency;
+            }
+        }
+        return score;
+    }
+
+    // Within one frequency postings are in id order, so a product not met yet that ties the threshold has an id
+    // at least as large as the id at every position.
+    private static boolean cannotBeOvertaken(ScoredId last, List<Cursor> cursors) {
+        double threshold = 0;
+        String unseenIdBound = null;
+        for (Cursor cursor : cursors) {
+            Posting next = cursor.peek();
+            if (next == null) {
+                continue;
+            }
+            threshold += impact(next.frequency) * cursor.inverseDocumentFrequency;
+            if (unseenIdBound == null || next.productId.compareTo(unseenIdBound) > 0) {
+                unseenIdBound = next.productId;
+            }
+        }
+        return unseenIdBound == null || last.score > threshold
+                || (last.score == threshold && last.productId.compareTo(unseenIdBound) < 0);
+    }
+
+    private static double impact(int frequency) {
+        return 1 + Math.log(frequency);
+    }
+
+    private void add(String term, String productId, int frequency) {
+        postings.compute(term, (key, matches) -> {
+            Postings result = matches == null ? new Postings() : matches;
+            result.put(productId, frequency);
+            return result;
+        });
+    }
+
+    private void remove(String term, String productId) {
+        postings.computeIfPresent(term, (key, matches) -> {
+            matches.remove(productId);
+            return matches.isEmpty() ? null : matches;
+        });
+    }
+
+    private static Map<String, Integer> termFrequencies(Product product) {
+        if (product == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> frequencies = tokenize(product.getName());
+        product.getDescription().map(Description::getText).map(SearchIndex::tokenize)
+                .ifPresent(terms -> terms.forEach((term, frequency) -> frequencies.merge(term, frequency, Integer::sum)));
+        return frequencies;
+    }
+
+    // Terms are lower-cased runs of letters and digits.
+    static Map<String, Integer> tokenize(String text) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean partOfTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (partOfTerm && start < 0) {
+                start = i;
+            } else if (!partOfTerm && start >= 0) {
+                frequencies.merge(text.substring(start, i).toLowerCase(Locale.ROOT), 1, Integer::sum);
+                start = -1;
+            }
+        }
+        return frequencies;
+    }
+
+    /**
+     * Products containing one term: their frequencies by id, and the same postings ordered by impact.
+     */
+    private static final class Postings {
+
+        private final ConcurrentMap<String, Integer> frequencies = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<Posting> byImpact = new ConcurrentSkipListSet<>();
+
+        private void put(String productId, int frequency) {
+            Integer previous = frequencies.put(productId, frequency);
+            byImpact.add(new Posting(productId, frequency));
+            if (previous != null && previous != frequency) {
+                byImpact.remove(new Posting(productId, previous));
+            }
+        }
+
+        private void remove(String productId) {
+            Integer previous = frequencies.remove(productId);
+            if (previous != null) {
+                byImpact.remove(new Posting(productId, previous));
+            }
+        }
+
+        private boolean isEmpty() {
+            return frequencies.isEmpty();
+        }
+
+        private int size() {
+            return frequencies.size();
+        }
+    }
+
+    private static final class Posting implements Comparable<Posting> {
+
+        private final String productId;
+        private final int frequency;
+
+        private Posting(String productId, int frequency) {
+            this.productId = productId;
+            this.frequency = frequency;
+        }
+
+        @Override
+        public int compareTo(Posting other) {
+            int byFrequency = Integer.compare(other.frequency, frequency);
+            return byFrequency != 0 ? byFrequency : productId.compareTo(other.productId);
+        }
+    }
+
+    private static final class Cursor {
+
+        private final Postings postings;
+        private final double inverseDocumentFrequency;
+        private final Iterator<Posting> iterator;
+        private Posting next;
+
+        private Cursor(Postings postings, double inverseDocumentFrequency) {
+            this.postings = postings;
+            this.inverseDocumentFrequency = inverseDocumentFrequency;
+            this.iterator = postings.byImpact.iterator();
+            this.next = iterator.hasNext() ? iterator.next() : null;
+        }
+
+        private Posting peek() {
+            return next;
+        }
+
+        private Posting advance() {
+            Posting current = next;
+            next = iterator.hasNext() ? iterator.next() : null;
+            return current;
+        }
+    }
+
+    // Ordered worst first, so the head of a bounded heap is the result to drop: lower score, then larger id.
+    private static final class ScoredId implements Comparable<ScoredId> {
+
+        private final String productId;
+        private final double score;
+
+        private ScoredId(String productId, double score) {
+            this.productId = productId;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredId other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : other.productId.compareTo(productId);
+        }
+    }
+}
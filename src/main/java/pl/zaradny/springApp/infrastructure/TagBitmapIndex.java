@@ -0,0 +1,403 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.domain.TagQuery;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Gives every stored product an int ordinal and keeps, per tag, a compressed bitmap of the ordinals of products
+ * carrying it, so boolean tag queries are answered with bitmap intersections, unions and differences.
+ * Ordinals below {@code sortedCount} follow id order, so a page is read straight from the bitmap starting at the
+ * cursor. Products whose id does not extend that order get ordinals in an unsorted tail, which queries scan in full.
+ * Once the tail is {@value #TAIL_LIMIT} long, its ids above every sorted one are sorted onto the end of the sorted
+ * ordinals; the few ids left behind, created concurrently with ids already sorted, stay in the tail until there are
+ * enough of them, or of deleted ordinals, to renumber every product in id order.
+ * Callers must serialize changes to one product, as the repositories do inside their per-id write sections.
+ * Each bitmap is guarded by its own monitor; a query reads one operand at a time into a private result.
+ */
+class TagBitmapIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int TAIL_LIMIT = 1024;
+    private static final Comparator<Product> BY_ID = Comparator.comparing(Product::getId);
+
+    // Held for reading by every write and query, and for writing only while ordinals change.
+    private final StampedLock numbering = new StampedLock();
+    private volatile ConcurrentMap<String, Integer> ordinalsById = new ConcurrentHashMap<>();
+    // Replaced by a larger copy when full. Ordinals are not reused until products are renumbered, so a slot keeps
+    // its id after the product is deleted and queries never see it point to another product.
+    private volatile String[] idsByOrdinal = new String[INITIAL_CAPACITY];
+    private volatile int sortedCount;
+    private String lastSortedId;
+    private int nextOrdinal;
+    private int stragglers;
+    // Emptied bitmaps are only dropped while renumbering, so a writer never adds to a dropped bitmap.
+    private final ConcurrentMap<Tag, RoaringBitmap> bitmapsByTag = new ConcurrentHashMap<>();
+    // Every tag whose bitmap may hold a tail ordinal, so sorting the tail does not visit every bitmap.
+    private final Set<Tag> tailTags = ConcurrentHashMap.newKeySet();
+    private volatile RoaringBitmap stored = new RoaringBitmap();
+
+    void replace(Product oldProduct, Product newProduct) {
+        long stamp = numbering.readLock();
+        try {
+            String id = newProduct != null ? newProduct.getId() : oldProduct.getId();
+            int ordinal = oldProduct == null ? assign(id) : ordinalsById.get(id);
+            Set<Tag> oldTags = tagsOf(oldProduct);
+            Set<Tag> newTags = tagsOf(newProduct);
+            for (Tag tag : oldTags) {
+                if (!newTags.contains(tag)) {
+                    RoaringBitmap bitmap = bitmapsByTag.get(tag);
+                    synchronized (bitmap) {
+                        bitmap.remove(ordinal);
+                    }
+                }
+            }
+            for (Tag tag : newTags) {
+                if (!oldTags.contains(tag)) {
+                    if (ordinal >= sortedCount) {
+                        tailTags.add(tag);
+                    }
+                    RoaringBitmap bitmap = bitmapsByTag.computeIfAbsent(tag, key -> new RoaringBitmap());
+                    synchronized (bitmap) {
+                        bitmap.add(ordinal);
+                    }
+                }
+            }
+            if (newProduct == null) {
+                release(id, ordinal);
+            }
+        } finally {
+            numbering.unlockRead(stamp);
+        }
+        if (needsReordering()) {
+            reorder();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} stored products matching the query, ordered by id and starting right after the
+     * {@code after} id. {@code lookup} finds a stored product by id and returns null once it is gone.
+     */
+    List<Product> find(TagQuery query, String after, int limit, Function<String, Product> lookup) {
+        long stamp = numbering.readLock();
+        try {
+            RoaringBitmap matching = productsMatching(query);
+            String[] ids = idsByOrdinal;
+            int sorted = sortedCount;
+            List<Product> page = new ArrayList<>(limit + 1);
+            PeekableIntIterator ordinals = matching.getIntIterator();
+            ordinals.advanceIfNeeded(after == null ? 0 : firstOrdinalAfter(ids, sorted, after));
+            while (page.size() < limit && ordinals.hasNext() && ordinals.peekNext() < sorted) {
+                int ordinal = ordinals.next();
+                Product product = matchingProduct(ids[ordinal], ordinal, query, lookup);
+                if (product != null) {
+                    page.add(product);
+                }
+            }
+            // Tail matches come out in ordinal order, so the first ones in id order are kept in a bounded heap.
+            // An id that could not make it into the page is skipped before its product is even looked up.
+            PriorityQueue<Product> tail = new PriorityQueue<>(limit + 1, BY_ID.reversed());
+            ordinals.advanceIfNeeded(sorted);
+            while (ordinals.hasNext()) {
+                int ordinal = ordinals.next();
+                String id = ids[ordinal];
+                if (after != null && id.compareTo(after) <= 0) {
+                    continue;
+                }
+                if (tail.size() == limit && id.compareTo(tail.peek().getId()) >= 0) {
+                    continue;
+                }
+                Product product = matchingProduct(id, ordinal, query, lookup);
+                if (product != null) {
+                    tail.add(product);
+                    if (tail.size() > limit) {
+                        tail.poll();
+                    }
+                }
+            }
+            page.addAll(tail);
+            page.sort(BY_ID);
+            return page.size() > limit ? new ArrayList<>(page.subList(0, limit)) : page;
+        } finally {
+            numbering.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Hands {@code counting} a function returning how many products carry both the given tag and {@code within},
+     * valid until {@code counting} returns.
+     */
+    void countWithin(Tag within, Consumer<ToIntFunction<Tag>> counting) {
+        long stamp = numbering.readLock();
+        try {
+            RoaringBitmap bitmap = bitmapsByTag.get(within);
+            RoaringBitmap carryingWithin = bitmap == null ? new RoaringBitmap() : copy(bitmap);
+            counting.accept(tag -> {
+                RoaringBitmap carrying = bitmapsByTag.get(tag);
+                if (carrying == null) {
+                    return 0;
+                }
+                synchronized (carrying) {
+                    return RoaringBitmap.andCardinality(carryingWithin, carrying);
+                }
+            });
+        } finally {
+            numbering.unlockRead(stamp);
+        }
+    }
+
+    // A product changed or deleted while the query ran may no longer match, or may have been saved again under a
+    // new ordinal; it is only returned from the ordinal it holds now.
+    private Product matchingProduct(String id, int ordinal, TagQuery query, Function<String, Product> lookup) {
+        Integer current = ordinalsById.get(id);
+        if (current == null || current != ordinal) {
+            return null;
+        }
+        Product product = lookup.apply(id);
+        return product != null && query.matches(product) ? product : null;
+    }
+
+    private RoaringBitmap productsMatching(TagQuery query) {
+        RoaringBitmap result = included(query);
+        for (Tag tag : query.getExcluded()) {
+            RoaringBitmap bitmap = bitmapsByTag.get(tag);
+            if (bitmap != null) {
+                synchronized (bitmap) {
+                    result.andNot(bitmap);
+                }
+            }
+        }
+        return result;
+    }
+
+    private RoaringBitmap included(TagQuery query) {
+        if (query.getIncluded().isEmpty()) {
+            return copy(stored);
+        }
+        if (query.getMatch() == TagQuery.Match.ANY) {
+            RoaringBitmap union = new RoaringBitmap();
+            for (Tag tag : query.getIncluded()) {
+                RoaringBitmap bitmap = bitmapsByTag.get(tag);
+                if (bitmap != null) {
+                    synchronized (bitmap) {
+                        union.or(bitmap);
+                    }
+                }
+            }
+            return union;
+        }
+        // Starting from the rarest tag keeps every intermediate result as small as the final one can get.
+        List<RoaringBitmap> bitmaps = new ArrayList<>();
+        for (Tag tag : query.getIncluded()) {
+            RoaringBitmap bitmap = bitmapsByTag.get(tag);
+            if (bitmap == null) {
+                return new RoaringBitmap();
+            }
+            bitmaps.add(bitmap);
+        }
+        bitmaps.sort(Comparator.comparingInt(TagBitmapIndex::cardinality));
+        RoaringBitmap intersection = copy(bitmaps.get(0));
+        for (RoaringBitmap bitmap : bitmaps.subList(1, bitmaps.size())) {
+            if (intersection.isEmpty()) {
+                break;
+            }
+            synchronized (bitmap) {
+                intersection.and(bitmap);
+            }
+        }
+        return intersection;
+    }
+
+    // Ids below sortedCount strictly increase with the ordinal, deleted ones included.
+    private static int firstOrdinalAfter(String[] ids, int sorted, String after) {
+        int low = 0;
+        int high = sorted;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ids[middle].compareTo(after) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private synchronized int assign(String id) {
+        int ordinal = nextOrdinal++;
+        if (ordinal >= idsByOrdinal.length) {
+            idsByOrdinal = Arrays.copyOf(idsByOrdinal, idsByOrdinal.length * 2);
+        }
+        idsByOrdinal[ordinal] = id;
+        ordinalsById.put(id, ordinal);
+        if (ordinal == sortedCount && (lastSortedId == null || id.compareTo(lastSortedId) > 0)) {
+            lastSortedId = id;
+            sortedCount = ordinal + 1;
+        }
+        RoaringBitmap stored = this.stored;
+        synchronized (stored) {
+            stored.add(ordinal);
+        }
+        return ordinal;
+    }
+
+    private synchronized void release(String id, int ordinal) {
+        RoaringBitmap stored = this.stored;
+        synchronized (stored) {
+            stored.remove(ordinal);
+        }
+        ordinalsById.remove(id);
+    }
+
+    private synchronized boolean needsReordering() {
+        return nextOrdinal - sortedCount - stragglers >= TAIL_LIMIT || needsRenumbering();
+    }
+
+    // Renumbering costs a pass over every bitmap, so it waits until the stragglers or the deleted ordinals amount to
+    // a fixed share of the products, which keeps its cost per write constant.
+    private synchronized boolean needsRenumbering() {
+        int live = ordinalsById.size();
+        return stragglers > Math.max(TAIL_LIMIT, live / 8) || nextOrdinal - live > Math.max(TAIL_LIMIT, live);
+    }
+
+    private void reorder() {
+        long stamp = numbering.writeLock();
+        try {
+            if (needsRenumbering()) {
+                renumber();
+            } else if (needsReordering()) {
+                sortTail();
+            }
+        } finally {
+            numbering.unlockWrite(stamp);
+        }
+    }
+
+    private void renumber() {
+        String[] ids = ordinalsById.keySet().toArray(new String[0]);
+        Arrays.sort(ids);
+        int[] renumbered = new int[nextOrdinal];
+        ConcurrentMap<String, Integer> ordinals = new ConcurrentHashMap<>(ids.length * 4 / 3 + 1);
+        RoaringBitmap renumberedStored = new RoaringBitmap();
+        for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+            renumbered[ordinalsById.get(ids[ordinal])] = ordinal;
+            ordinals.put(ids[ordinal], ordinal);
+            renumberedStored.add(ordinal);
+        }
+        bitmapsByTag.replaceAll((tag, bitmap) -> renumber(bitmap, renumbered));
+        bitmapsByTag.values().removeIf(RoaringBitmap::isEmpty);
+        tailTags.clear();
+        synchronized (this) {
+            ordinalsById = ordinals;
+            idsByOrdinal = Arrays.copyOf(ids, Math.max(INITIAL_CAPACITY, ids.length * 2));
+            sortedCount = ids.length;
+            lastSortedId = ids.length == 0 ? null : ids[ids.length - 1];
+            nextOrdinal = ids.length;
+            stragglers = 0;
+            stored = renumberedStored;
+        }
+    }
+
+    // Only tail ordinals move: the ids above lastSortedId in id order, then the stragglers, deleted ones dropped.
+    private void sortTail() {
+        int tailStart = sortedCount;
+        String[] ids = idsByOrdinal;
+        List<String> tail = new ArrayList<>(nextOrdinal - tailStart);
+        for (int ordinal = tailStart; ordinal < nextOrdinal; ordinal++) {
+            Integer current = ordinalsById.get(ids[ordinal]);
+            if (current != null && current == ordinal) {
+                tail.add(ids[ordinal]);
+            }
+        }
+        tail.sort(Comparator.naturalOrder());
+        int firstAbove = 0;
+        while (lastSortedId != null && firstAbove < tail.size()
+                && tail.get(firstAbove).compareTo(lastSortedId) <= 0) {
+            firstAbove++;
+        }
+        List<String> reordered = new ArrayList<>(tail.subList(firstAbove, tail.size()));
+        reordered.addAll(tail.subList(0, firstAbove));
+        int[] moved = new int[nextOrdinal - tailStart];
+        for (int i = 0; i < reordered.size(); i++) {
+            moved[ordinalsById.get(reordered.get(i)) - tailStart] = tailStart + i;
+        }
+        for (Tag tag : tailTags) {
+            RoaringBitmap bitmap = bitmapsByTag.get(tag);
+            if (bitmap != null) {
+                moveTail(bitmap, tailStart, moved);
+            }
+        }
+        moveTail(stored, tailStart, moved);
+        synchronized (this) {
+            for (int i = 0; i < reordered.size(); i++) {
+                ids[tailStart + i] = reordered.get(i);
+                ordinalsById.put(reordered.get(i), tailStart + i);
+            }
+            Arrays.fill(ids, tailStart + reordered.size(), nextOrdinal, null);
+            int sorted = reordered.size() - firstAbove;
+            if (sorted > 0) {
+                lastSortedId = reordered.get(sorted - 1);
+            }
+            sortedCount = tailStart + sorted;
+            nextOrdinal = tailStart + reordered.size();
+            stragglers = firstAbove;
+            if (stragglers == 0) {
+                tailTags.clear();
+            }
+        }
+    }
+
+    private static void moveTail(RoaringBitmap bitmap, int tailStart, int[] moved) {
+        List<Integer> tail = new ArrayList<>();
+        PeekableIntIterator ordinals = bitmap.getIntIterator();
+        ordinals.advanceIfNeeded(tailStart);
+        while (ordinals.hasNext()) {
+            tail.add(ordinals.next());
+        }
+        for (int ordinal : tail) {
+            bitmap.remove(ordinal);
+        }
+        for (int ordinal : tail) {
+            bitmap.add(moved[ordinal - tailStart]);
+        }
+    }
+
+    private static RoaringBitmap renumber(RoaringBitmap bitmap, int[] renumbered) {
+        RoaringBitmap result = new RoaringBitmap();
+        IntIterator ordinals = bitmap.getIntIterator();
+        while (ordinals.hasNext()) {
+            result.add(renumbered[ordinals.next()]);
+        }
+        return result;
+    }
+
+    private static RoaringBitmap copy(RoaringBitmap bitmap) {
+        synchronized (bitmap) {
+            return bitmap.clone();
+        }
+    }
+
+    private static int cardinality(RoaringBitmap bitmap) {
+        synchronized (bitmap) {
+            return bitmap.getCardinality();
+        }
+    }
+
+    private static Set<Tag> tagsOf(Product product) {
+        if (product == null) {
+            return Collections.emptySet();
+        }
+        return product.getTags().orElse(Collections.emptySet());
+    }
+}
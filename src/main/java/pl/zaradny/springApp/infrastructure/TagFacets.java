@@ -0,0 +1,98 @@
+package pl.zaradny.springApp.infrastructure;
+
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counts how many products carry each tag. A write only touches the counts of the tags it adds or removes, so an
+ * update that keeps the tags costs nothing. Facets within a tag are counted at read time from the tag bitmaps,
+ * visiting tags from the most common down and stopping once no remaining tag can make it into the result.
+ * Callers must serialize changes to one product, as the repositories do inside their per-id write sections.
+ */
+class TagFacets {
+
+    private static final Comparator<Map.Entry<Tag, Integer>> MOST_COMMON_LAST =
+            Map.Entry.<Tag, Integer>comparingByValue().thenComparing(entry -> entry.getKey().getName(), Comparator.reverseOrder());
+
+    private final ConcurrentMap<Tag, Integer> counts = new ConcurrentHashMap<>();
+    private final TagBitmapIndex tagBitmapIndex;
+
+    TagFacets(TagBitmapIndex tagBitmapIndex) {
+        this.tagBitmapIndex = tagBitmapIndex;
+    }
+
+    void replace(Product oldProduct, Product newProduct) {
+        Set<Tag> oldTags = tagsOf(oldProduct);
+        Set<Tag> newTags = tagsOf(newProduct);
+        for (Tag tag : oldTags) {
+            if (!newTags.contains(tag)) {
+                counts.merge(tag, -1, (count, change) -> count + change == 0 ? null : count + change);
+            }
+        }
+        for (Tag tag : newTags) {
+            if (!oldTags.contains(tag)) {
+                counts.merge(tag, 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} tags with the number of products carrying them, most common first and ties by name.
+     * With a {@code within} tag only products carrying it are counted, and that tag itself is left out.
+     */
+    Map<Tag, Integer> top(Tag within, int limit) {
+        PriorityQueue<Map.Entry<Tag, Integer>> best = new PriorityQueue<>(MOST_COMMON_LAST);
+        if (within == null) {
+            counts.forEach((tag, count) -> offer(best, tag, count, limit));
+        } else if (counts.containsKey(within)) {
+            topWithin(within, limit, best);
+        }
+        LinkedList<Map.Entry<Tag, Integer>> ranked = new LinkedList<>();
+        while (!best.isEmpty()) {
+            ranked.addFirst(best.poll());
+        }
+        Map<Tag, Integer> facets = new LinkedHashMap<>();
+        ranked.forEach(entry -> facets.put(entry.getKey(), entry.getValue()));
+        return facets;
+    }
+
+    // A tag is carried by no more products within another tag than overall, so once the overall count of the next
+    // candidate falls below the worst count kept, no later candidate can replace it.
+    private void topWithin(Tag within, int limit, PriorityQueue<Map.Entry<Tag, Integer>> best) {
+        PriorityQueue<Map.Entry<Tag, Integer>> candidates = new PriorityQueue<>(MOST_COMMON_LAST.reversed());
+        candidates.addAll(counts.entrySet());
+        tagBitmapIndex.countWithin(within, countCarrying -> {
+            while (!candidates.isEmpty()) {
+                Map.Entry<Tag, Integer> candidate = candidates.poll();
+                if (best.size() == limit && candidate.getValue() < best.peek().getValue()) {
+                    return;
+                }
+                if (!candidate.getKey().equals(within)) {
+                    int count = countCarrying.applyAsInt(candidate.getKey());
+                    offer(best, candidate.getKey(), count == 0 ? null : count, limit);
+                }
+            }
+        });
+    }
+
+    private static void offer(PriorityQueue<Map.Entry<Tag, Integer>> best, Tag tag, Integer count, int limit) {
+        if (count == null) {
+            return;
+        }
+        best.add(new AbstractMap.SimpleImmutableEntry<>(tag, count));
+        if (best.size() > limit) {
+            best.poll();
+        }
+    }
+
+    private static Set<Tag> tagsOf(Product product) {
+        if (product == null) {
+            return Collections.emptySet();
+        }
+        return product.getTags().orElse(Collections.emptySet());
+    }
+}
@@ -0,0 +1,67 @@
+package pl.zaradny.springApp.infrastructure;
+
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Inverted index from a tag to the ids of products carrying it, kept in id order so a tag can be paged through.
+ * Each tag's id set is only touched inside compute() on that tag, so adding to and dropping an emptied set
+ * can not race with each other.
+ */
+class TagIndex {
+
+    private final ConcurrentMap<Tag, NavigableSet<String>> productIdsByTag = new ConcurrentHashMap<>();
+
+    void replace(Product oldProduct, Product newProduct) {
+        Set<Tag> oldTags = tagsOf(oldProduct);
+        Set<Tag> newTags = tagsOf(newProduct);
+        for (Tag tag : oldTags) {
+            if (!newTags.contains(tag)) {
+                remove(tag, oldProduct.getId());
+            }
+        }
+        for (Tag tag : newTags) {
+            if (!oldTags.contains(tag)) {
+                add(tag, newProduct.getId());
+            }
+        }
+    }
+
+    NavigableSet<String> productIdsWith(Tag tag) {
+        NavigableSet<String> ids = productIdsByTag.get(tag);
+        return ids == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(ids);
+    }
+
+    int size() {
+        return productIdsByTag.size();
+    }
+
+    private void add(Tag tag, String productId) {
+        productIdsByTag.compute(tag, (key, ids) -> {
+            NavigableSet<String> result = ids == null ? new ConcurrentSkipListSet<>() : ids;
+            result.add(productId);
+            return result;
+        });
+    }
+
+    private void remove(Tag tag, String productId) {
+        productIdsByTag.computeIfPresent(tag, (key, ids) -> {
+            ids.remove(productId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private static Set<Tag> tagsOf(Product product) {
+        if (product == null) {
+            return Collections.emptySet();
+        }
+        return product.getTags().orElse(Collections.emptySet());
+    }
+}
@@ -0,0 +1,212 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.domain.TagQuery;
+import pl.zaradny.springApp.exceptions.ProductNotFoundException;
+import pl.zaradny.springApp.exceptions.ProductVersionConflictException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the catalog in an {@link InMemoryProductRepository} and records every write in a {@link ProductLog} first,
+ * rebuilding the in-memory state from that log on startup.
+ */
+@Repository
+@Qualifier("productStore")
+@ConditionalOnProperty(name = "products.store", havingValue = "wal")
+public class WriteAheadLogProductRepository implements ProductRepository, Closeable {
+
+    private final InMemoryProductRepository state = new InMemoryProductRepository();
+    // Keeps log order and in-memory order identical; durability is awaited after the lock is released, so a write is
+    // visible to readers before it is durable (see FsyncPolicy.ALWAYS).
+    private final Lock writeLock = new ReentrantLock();
+    private final ProductLog log;
+
+    public WriteAheadLogProductRepository(@Value("${products.wal.path:products.wal}") String path,
+                                          @Value("${products.wal.fsync:ALWAYS}") FsyncPolicy fsyncPolicy,
+                                          @Value("${products.wal.fsync-interval-ms:100}") long fsyncIntervalMillis) {
+        this.log = ProductLog.open(Paths.get(path), fsyncPolicy, fsyncIntervalMillis, state::save,
+                this::replayDelete);
+    }
+
+    @Override
+    public void save(Product product) {
+        long position;
+        writeLock.lock();
+        try {
+            position = log.appendSave(product);
+            state.save(product);
+        } finally {
+            writeLock.unlock();
+        }
+        log.awaitDurable(position);
+    }
+
+    @Override
+    public Product findById(String id) {
+        return state.findById(id);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        long position;
+        writeLock.lock();
+        try {
+            state.findById(id);
+            position = log.appendDelete(id);
+            state.deleteById(id);
+        } finally {
+            writeLock.unlock();
+        }
+        log.awaitDurable(position);
+    }
+
+    @Override
+    public Product update(Product oldProduct, Product newProduct) {
+        long position;
+        Product updated;
+        writeLock.lock();
+        try {
+            if (state.findById(oldProduct.getId()).getVersion() != oldProduct.getVersion()) {
+                throw new ProductVersionConflictException();
+            }
+            position = log.appendSave(newProduct);
+            updated = state.update(oldProduct, newProduct);
+        } finally {
+            writeLock.unlock();
+        }
+        log.awaitDurable(position);
+        return updated;
+    }
+
+    // The whole batch is appended under one lock acquisition and made durable with a single force. Records are
+    // encoded first, so a product too large for the log rejects the batch before any of it is written.
+    @Override
+    public boolean[] applyAll(List<ProductWrite> writes) {
+        List<ProductLog.Frame> frames = new ArrayList<>(writes.size());
+        for (ProductWrite write : writes) {
+            frames.add(write.getType() == ProductWrite.Type.DELETE ? log.prepareDelete(write.getId())
+                    : log.prepareSave(write.getProduct()));
+        }
+        boolean[] applied = new boolean[writes.size()];
+        long position = -1;
+        writeLock.lock();
+        try {
+            for (int i = 0; i < writes.size(); i++) {
+                ProductWrite write = writes.get(i);
+                if ((write.getType() == ProductWrite.Type.DELETE && !state.exists(write.getId()))
+                        || (write.getType() == ProductWrite.Type.UPDATE
+                        && !state.hasVersion(write.getId(), write.getOldProduct().getVersion()))) {
+                    continue;
+                }
+                position = log.append(frames.get(i));
+                if (write.getType() == ProductWrite.Type.DELETE) {
+                    state.deleteById(write.getId());
+                } else {
+                    state.save(write.getProduct());
+                }
+                applied[i] = true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (position >= 0) {
+            log.awaitDurable(position);
+        }
+        return applied;
+    }
+
+    @Override
+    public Stream<Product> getAll() {
+        return state.getAll();
+    }
+
+    @Override
+    public List<Product> getPage(String after, int limit) {
+        return state.getPage(after, limit);
+    }
+
+    @Override
+    public List<Product> findByTag(Tag tag) {
+        return state.findByTag(tag);
+    }
+
+    @Override
+    public List<Product> findByTag(Tag tag, String after, int limit) {
+        return state.findByTag(tag, after, limit);
+    }
+
+    @Override
+    public List<Product> findByTags(TagQuery query, String after, int limit) {
+        return state.findByTags(query, after, limit);
+    }
+
+    @Override
+    public List<Product> findByPriceRange(Currency currency, BigDecimal min, BigDecimal max) {
+        return state.findByPriceRange(currency, min, max);
+    }
+
+    @Override
+    public List<Product> search(String query, int limit) {
+        return state.search(query, limit);
+    }
+
+    @Override
+    public Map<Tag, Integer> tagFacets(Tag within, int limit) {
+        return state.tagFacets(within, limit);
+    }
+
+    @Override
+    public long modificationCount() {
+        return state.modificationCount();
+    }
+
+    @Override
+    public long modificationCount(Tag tag) {
+        return state.modificationCount(tag);
+    }
+
+    @Override
+    public int size() {
+        return state.size();
+    }
+
+    @Override
+    public int tagCount() {
+        return state.tagCount();
+    }
+
+    // Every write is appended to the log, and may wait for fsync, before it is applied.
+    @Override
+    public boolean hasBlockingWrites() {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    private void replayDelete(String id) {
+        try {
+            state.deleteById(id);
+        } catch (ProductNotFoundException e) {
+            // the log may hold a delete whose product was never recorded, e.g. after a failed write
+        }
+    }
+}
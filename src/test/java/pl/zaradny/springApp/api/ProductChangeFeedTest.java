@@ -0,0 +1,189 @@
+package pl.zaradny.springApp.api;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pl.zaradny.springApp.api.ProductChangeFeed.SlowConsumerPolicy;
+import pl.zaradny.springApp.domain.ProductChange;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProductChangeFeedTest {
+
+    private ProductChangeFeed feed;
+
+    @After
+    public void close() {
+        if (feed != null) {
+            feed.close();
+        }
+    }
+
+    @Test
+    public void shouldResumeAfterLastSeenChange() {
+        //given
+        feed = new ProductChangeFeed(16, SlowConsumerPolicy.DROP, 1000, 1000);
+        feed.productChanged(new ProductChange(ProductChange.Type.CREATED, "a"));
+        feed.productChanged(new ProductChange(ProductChange.Type.UPDATED, "a"));
+        feed.productChanged(new ProductChange(ProductChange.Type.DELETED, "a"));
+        //when
+        ProductChangeFeed.Batch batch = feed.read(2, 100);
+        //then
+        assertThat(batch.getGap()).isNull();
+        assertThat(batch.getEvents()).containsExactly(new ProductChangeEventDto(2, "UPDATED", "a"),
+                new ProductChangeEventDto(3, "DELETED", "a"));
+        assertThat(batch.getNext()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldReportChangesOverwrittenBeforeTheyWereRead() {
+        //given
+        feed = new ProductChangeFeed(5, SlowConsumerPolicy.DROP, 1000, 1000);
+        for (int i = 1; i <= 20; i++) {
+            feed.productChanged(new ProductChange(ProductChange.Type.CREATED, String.valueOf(i)));
+        }
+        //when
+        ProductChangeFeed.Batch batch = feed.read(3, 100);
+        //then
+        assertThat(feed.capacity()).isEqualTo(8);
+        assertThat(batch.getGap()).isEqualTo(new ChangeGapDto(3, 12));
+        assertThat(batch.getEvents()).hasSize(8);
+        assertThat(batch.getEvents().get(0).getSequence()).isEqualTo(13);
+        assertThat(batch.getNext()).isEqualTo(21);
+    }
+
+    @Test
+    public void shouldSendOnlyNewChangesToSubscriberWithoutLastEventId() {
+        //given
+        feed = new ProductChangeFeed(16, SlowConsumerPolicy.DROP, 1000, 1000);
+        feed.productChanged(new ProductChange(ProductChange.Type.CREATED, "old"));
+        RecordingEmitter emitter = new RecordingEmitter();
+        ProductChangeFeed.Subscription subscription = feed.open(emitter, null);
+        feed.productChanged(new ProductChange(ProductChange.Type.CREATED, "new"));
+        //when
+        subscription.drain();
+        //then
+        assertThat(emitter.events).hasSize(1);
+        assertThat(subscription.getNext()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldDisconnectLappedSubscriber() {
+        //given
+        feed = new ProductChangeFeed(4, SlowConsumerPolicy.DISCONNECT, 1000, 1000);
+        RecordingEmitter emitter = new RecordingEmitter();
+        ProductChangeFeed.Subscription subscription = feed.open(emitter, null);
+        subscription.drain();
+        for (int i = 0; i < 10; i++) {
+            feed.productChanged(new ProductChange(ProductChange.Type.CREATED, String.valueOf(i)));
+        }
+        //when
+        subscription.drain();
+        //then
+        assertThat(emitter.events).hasSize(1);
+        assertThat(emitter.completed).isTrue();
+    }
+
+    @Test
+    public void shouldSendPublishedChangeToSubscriberWithoutWaitingForNextTick() throws InterruptedException {
+        //given
+        feed = new ProductChangeFeed(16, SlowConsumerPolicy.DROP, 10_000, 60_000);
+        RecordingEmitter emitter = new RecordingEmitter();
+        feed.register(emitter, null);
+        //when
+        feed.productChanged(new ProductChange(ProductChange.Type.CREATED, "a"));
+        //then
+        assertThat(emitter.sent.await(500, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    @Test
+    public void shouldKeepFeedingOtherSubscribersWhileOneClientIsStuck() throws InterruptedException {
+        //given
+        feed = new ProductChangeFeed(16, SlowConsumerPolicy.DISCONNECT, 50, 60_000);
+        StuckEmitter stuck = new StuckEmitter();
+        RecordingEmitter other = new RecordingEmitter();
+        feed.register(stuck, null);
+        feed.register(other, null);
+        try {
+            feed.productChanged(new ProductChange(ProductChange.Type.CREATED, "a"));
+            assertThat(stuck.entered.await(5, TimeUnit.SECONDS)).isTrue();
+            //when
+            feed.productChanged(new ProductChange(ProductChange.Type.UPDATED, "a"));
+            //then
+            awaitUntil(() -> other.events.size() == 2);
+            awaitUntil(() -> stuck.completed);
+        } finally {
+            stuck.release.countDown();
+        }
+    }
+
+    @Test
+    public void shouldSkipChangesQueuedBehindSendThatTimedOut() throws InterruptedException {
+        //given
+        feed = new ProductChangeFeed(16, SlowConsumerPolicy.DROP, 50, 60_000);
+        StuckEmitter stuck = new StuckEmitter();
+        ProductChangeFeed.Subscription subscription = feed.register(stuck, null);
+        feed.productChanged(new ProductChange(ProductChange.Type.CREATED, "a"));
+        assertThat(stuck.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        feed.productChanged(new ProductChange(ProductChange.Type.UPDATED, "a"));
+        feed.productChanged(new ProductChange(ProductChange.Type.DELETED, "a"));
+        Thread.sleep(500);
+        //when
+        stuck.release.countDown();
+        //then
+        awaitUntil(() -> subscription.getNext() == 4);
+        assertThat(stuck.events).hasSize(2);
+        assertThat(stuck.completed).isFalse();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        final List<SseEventBuilder> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch sent = new CountDownLatch(1);
+        volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            events.add(builder);
+            sent.countDown();
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+
+    // A client whose socket stopped draining: its first send blocks until released.
+    private static class StuckEmitter extends RecordingEmitter {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.send(builder);
+        }
+    }
+}
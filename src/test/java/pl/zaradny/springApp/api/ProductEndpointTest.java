@@ -15,6 +15,8 @@ import pl.zaradny.springApp.domain.*;
 import pl.zaradny.springApp.exceptions.ProductNotFoundException;
 import pl.zaradny.springApp.testUtils.ProductRequestDtoBuilder;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.assertj.core.api.Assertions.*;
 
@@ -47,6 +49,82 @@ public class ProductEndpointTest extends SpringAppApplicationTests {
         assertThat(result.getBody()).isEqualToComparingFieldByField(existingProduct);
     }
 
+    @Test
+    public void shouldServeCachedProductUntilItIsUpdated(){
+        //given
+        ProductResponseDto existingProduct = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build());
+        final String url = productsUrl + existingProduct.getId();
+        httpClient.getForEntity(url, ProductResponseDto.class);
+        httpClient.getForEntity(url, ProductResponseDto.class);
+        productFacade.update(existingProduct.getId(), new ProductRequestDtoBuilder("renamed",
+                new PriceDto("100", "PLN")).build());
+        //when
+        ResponseEntity<ProductResponseDto> result = httpClient.getForEntity(url, ProductResponseDto.class);
+        CacheStatsDto stats = httpClient.getForObject(productsUrl + "cache/stats", CacheStatsDto.class);
+        //then
+        assertThat(result.getBody().getName()).isEqualTo("renamed");
+        assertThat(stats.getHits()).isEqualTo(1);
+        assertThat(stats.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldExposeProductMetricsForPrometheus(){
+        //given
+        httpClient.getForEntity(productsUrl + "missing", String.class);
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN")).build());
+        //when
+        String metrics = httpClient.getForObject("http://localhost:" + port + "/actuator/prometheus", String.class);
+        //then
+        assertThat(metrics).contains("products_facade_seconds_count{exception=\"ProductNotFoundException\"");
+        assertThat(metrics).contains("products_facade_seconds_bucket{exception=\"none\",operation=\"create\"");
+        assertThat(metrics).contains("products_catalog_size 1.0");
+    }
+
+    @Test
+    public void shouldResponse304HttpCodeWhenProductIsNotModified(){
+        //given
+        ProductResponseDto existingProduct = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build());
+        final String url = productsUrl + existingProduct.getId();
+        String eTag = httpClient.getForEntity(url, ProductResponseDto.class).getHeaders().getETag();
+        //when
+        ResponseEntity<ProductResponseDto> notModified = httpClient.exchange(url, HttpMethod.GET,
+                getConditionalRequest(eTag), ProductResponseDto.class);
+        productFacade.update(existingProduct.getId(), new ProductRequestDtoBuilder("renamed",
+                new PriceDto("100", "PLN")).build());
+        ResponseEntity<ProductResponseDto> modified = httpClient.exchange(url, HttpMethod.GET,
+                getConditionalRequest(eTag), ProductResponseDto.class);
+        //then
+        assertThat(notModified.getStatusCodeValue()).isEqualTo(304);
+        assertThat(notModified.getBody()).isNull();
+        assertThat(modified.getStatusCodeValue()).isEqualTo(200);
+        assertThat(modified.getBody().getVersion()).isEqualTo(2);
+        assertThat(modified.getHeaders().getETag()).isNotEqualTo(eTag);
+    }
+
+    @Test
+    public void shouldResponse304HttpCodeWhenNoProductWithTagChanged(){
+        //given
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("tag1"))).build());
+        final String url = productsUrl + "?tag=tag1";
+        String eTag = httpClient.getForEntity(url, ProductsResponseDto.class).getHeaders().getETag();
+        //when
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("tag2"))).build());
+        ResponseEntity<ProductsResponseDto> notModified = httpClient.exchange(url, HttpMethod.GET,
+                getConditionalRequest(eTag), ProductsResponseDto.class);
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("tag1"))).build());
+        ResponseEntity<ProductsResponseDto> modified = httpClient.exchange(url, HttpMethod.GET,
+                getConditionalRequest(eTag), ProductsResponseDto.class);
+        //then
+        assertThat(notModified.getStatusCodeValue()).isEqualTo(304);
+        assertThat(modified.getStatusCodeValue()).isEqualTo(200);
+        assertThat(modified.getBody().getProducts()).hasSize(2);
+    }
+
     @Test
     public void shouldGetListOfAllProducts(){
         //given
@@ -84,6 +162,196 @@ public class ProductEndpointTest extends SpringAppApplicationTests {
         assertThat(result.getBody().getProducts().get(0).getId()).isEqualTo(prd1.getId());
     }
 
+    @Test
+    public void shouldPageThroughAllProductsWithCursor(){
+        //given
+        for (int i = 0; i < 3; i++) {
+            productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN")).build());
+        }
+        //when
+        ResponseEntity<ProductsResponseDto> firstPage = httpClient.getForEntity(productsUrl + "?limit=2",
+                ProductsResponseDto.class);
+        ResponseEntity<ProductsResponseDto> secondPage = httpClient.getForEntity(productsUrl + "?limit=2&after="
+                + firstPage.getBody().getNextCursor(), ProductsResponseDto.class);
+        //then
+        assertThat(firstPage.getBody().getProducts().size()).isEqualTo(2);
+        assertThat(secondPage.getBody().getProducts().size()).isEqualTo(1);
+        assertThat(secondPage.getBody().getNextCursor()).isNull();
+        assertThat(firstPage.getBody().getProducts().get(1).getId()
+                .compareTo(secondPage.getBody().getProducts().get(0).getId())).isNegative();
+    }
+
+    @Test
+    public void shouldPageThroughProductsWithTag(){
+        //given
+        ProductResponseDto prd1 = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN"))
+                .withTags(Lists.asList(new TagDto("tag"), new TagDto[0]))
+                .build());
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("150", "EUR")).build());
+        //when
+        ResponseEntity<ProductsResponseDto> result = httpClient.getForEntity(productsUrl + "?tag=tag&limit=1",
+                ProductsResponseDto.class);
+        //then
+        assertThat(result.getBody().getProducts().size()).isEqualTo(1);
+        assertThat(result.getBody().getProducts().get(0).getId()).isEqualTo(prd1.getId());
+        assertThat(result.getBody().getNextCursor()).isNull();
+    }
+
+    @Test
+    public void shouldResponse400HttpCodeWhenPageLimitIsTooBig(){
+        //given
+        final String url = productsUrl + "?limit=1001";
+        //when
+        ResponseEntity<ProductsResponseDto> result = httpClient.getForEntity(url, ProductsResponseDto.class);
+        //then
+        assertThat(result.getStatusCodeValue()).isEqualTo(400);
+    }
+
+    @Test
+    public void shouldGetProductsInPriceRange(){
+        //given
+        ProductResponseDto cheap = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("50", "PLN")).build());
+        ProductResponseDto expensive = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("150", "PLN")).build());
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "EUR")).build());
+        final String url = productsUrl + "?currency=PLN&minPrice=10&maxPrice=200";
+        //when
+        ResponseEntity<ProductsResponseDto> result = httpClient.getForEntity(url, ProductsResponseDto.class);
+        //then
+        assertThat(result.getStatusCodeValue()).isEqualTo(200);
+        assertThat(result.getBody().getProducts()).containsExactly(cheap, expensive);
+    }
+
+    @Test
+    public void shouldResponse400HttpCodeWhenPriceRangeCurrencyIsNotCorrect(){
+        //given
+        final String url = productsUrl + "?currency=XYZ1&minPrice=10";
+        //when
+        ResponseEntity<ProductsResponseDto> result = httpClient.getForEntity(url, ProductsResponseDto.class);
+        //then
+        assertThat(result.getStatusCodeValue()).isEqualTo(400);
+    }
+
+    @Test
+    public void shouldResponse400HttpCodeWhenListingFiltersAreCombined(){
+        //when
+        ResponseEntity<String> tagAndTags = httpClient.getForEntity(productsUrl + "?tag=shoes&tags=red",
+                String.class);
+        ResponseEntity<String> tagAndCurrency = httpClient.getForEntity(productsUrl + "?tag=shoes&currency=PLN",
+                String.class);
+        ResponseEntity<String> tagsAndCurrency = httpClient.getForEntity(productsUrl + "?tags=shoes&currency=PLN",
+                String.class);
+        //then
+        assertThat(tagAndTags.getStatusCodeValue()).isEqualTo(400);
+        assertThat(tagAndCurrency.getStatusCodeValue()).isEqualTo(400);
+        assertThat(tagsAndCurrency.getStatusCodeValue()).isEqualTo(400);
+    }
+
+    @Test
+    public void shouldSearchProductsByNameAndDescription(){
+        //given
+        ProductResponseDto mug = productFacade.create(new ProductRequestDtoBuilder("Coffee mug",
+                new PriceDto("100", "PLN"))
+                .withDescription(new DescriptionDto("Ceramic mug for coffee lovers"))
+                .build());
+        productFacade.create(new ProductRequestDtoBuilder("Lamp", new PriceDto("100", "PLN")).build());
+        final String url = productsUrl + "search?q=coffee";
+        //when
+        ResponseEntity<ProductsResponseDto> result = httpClient.getForEntity(url, ProductsResponseDto.class);
+        //then
+        assertThat(result.getStatusCodeValue()).isEqualTo(200);
+        assertThat(result.getBody().getProducts()).containsExactly(mug);
+    }
+
+    @Test
+    public void shouldFindProductsMatchingTagQuery(){
+        //given
+        ProductResponseDto redShoes = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).withTags(Lists.newArrayList(new TagDto("shoes"), new TagDto("red")))
+                .build());
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("shoes"), new TagDto("red"), new TagDto("sale"))).build());
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("shoes"))).build());
+        final String url = productsUrl + "?tags=shoes,red,!sale";
+        //when
+        ResponseEntity<ProductsResponseDto> result = httpClient.getForEntity(url, ProductsResponseDto.class);
+        ResponseEntity<String> badMatch = httpClient.getForEntity(url + "&match=some", String.class);
+        //then
+        assertThat(result.getStatusCodeValue()).isEqualTo(200);
+        assertThat(result.getBody().getProducts()).containsExactly(redShoes);
+        assertThat(badMatch.getStatusCodeValue()).isEqualTo(400);
+    }
+
+    @Test
+    public void shouldCountTagFacetsOverallAndWithinTag(){
+        //given
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("shoes"), new TagDto("red"))).build());
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("shoes"), new TagDto("blue"))).build());
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("hats"), new TagDto("red"))).build());
+        //when
+        TagFacetsResponseDto top = httpClient.getForObject(productsUrl + "facets/tags?limit=2",
+                TagFacetsResponseDto.class);
+        TagFacetsResponseDto withinShoes = httpClient.getForObject(productsUrl + "facets/tags?tag=shoes",
+                TagFacetsResponseDto.class);
+        //then
+        assertThat(top.getFacets()).containsExactly(new TagFacetDto("red", 2), new TagFacetDto("shoes", 2));
+        assertThat(withinShoes.getFacets()).containsExactly(new TagFacetDto("blue", 1), new TagFacetDto("red", 1));
+    }
+
+    @Test
+    public void shouldApplyBatchAndReportResultPerOperation(){
+        //given
+        ProductResponseDto toUpdate = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build());
+        ProductResponseDto toDelete = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build());
+        BatchRequestDto batch = new BatchRequestDto(Lists.newArrayList(
+                new BatchOperationDto("create", null, new ProductRequestDtoBuilder("created",
+                        new PriceDto("10", "PLN")).build()),
+                new BatchOperationDto("create", null, new ProductRequestDtoBuilder("bad",
+                        new PriceDto("10", "NOT_A_CURRENCY")).build()),
+                new BatchOperationDto("update", toUpdate.getId(), new ProductRequestDtoBuilder("updated",
+                        new PriceDto("20", "PLN")).build()),
+                new BatchOperationDto("delete", toDelete.getId(), null),
+                new BatchOperationDto("delete", "emptyDB", null)));
+        //when
+        ResponseEntity<BatchResponseDto> result = httpClient.postForEntity(productsUrl + "batch",
+                getHttpRequest(mapToJson(batch)), BatchResponseDto.class);
+        //then
+        assertThat(result.getStatusCodeValue()).isEqualTo(200);
+        List<BatchResultDto> results = result.getBody().getResults();
+        assertThat(results).extracting(BatchResultDto::getStatus).containsExactly(201, 400, 200, 204, 404);
+        assertThat(productFacade.findById(results.get(0).getId()).getName()).isEqualTo("created");
+        assertThat(productFacade.findById(toUpdate.getId()).getName()).isEqualTo("updated");
+        assertThrows(ProductNotFoundException.class, () -> productFacade.findById(toDelete.getId()));
+    }
+
+    @Test
+    public void shouldExportAllProductsAsNdjson() throws Exception {
+        //given
+        ProductResponseDto prd1 = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build());
+        ProductResponseDto prd2 = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("150", "EUR")).build());
+        //when
+        ResponseEntity<String> result = httpClient.getForEntity(productsUrl + "export", String.class);
+        //then
+        assertThat(result.getStatusCodeValue()).isEqualTo(200);
+        assertThat(result.getHeaders().getContentType().toString()).isEqualTo("application/x-ndjson");
+        String[] lines = result.getBody().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[0], ProductResponseDto.class))
+                .isIn(prd1, prd2);
+        assertThat(objectMapper.readValue(lines[1], ProductResponseDto.class))
+                .isIn(prd1, prd2);
+    }
+
     @Test
     public void shouldResponse404HttpCodeWhenProductDoesNotExist(){
         //given
@@ -193,6 +461,24 @@ public class ProductEndpointTest extends SpringAppApplicationTests {
         assertThat(result.getStatusCodeValue()).isEqualTo(400);
     }
 
+    @Test
+    public void shouldListEveryViolationWhenCreatesInvalidProduct(){
+        //given
+        final ProductRequestDto product = new ProductRequestDtoBuilder("", new PriceDto("ten", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("")))
+                .build();
+        String productJson = mapToJson(product);
+        //when
+        ResponseEntity<ValidationErrorResponseDto> result = httpClient.postForEntity(productsUrl,
+                getHttpRequest(productJson), ValidationErrorResponseDto.class);
+        //then
+        assertThat(result.getStatusCodeValue()).isEqualTo(400);
+        assertThat(result.getBody().getViolations()).containsExactly(
+                new ViolationDto("name", "Product name can not be empty"),
+                new ViolationDto("price.amount", "Price amount must be a number"),
+                new ViolationDto("tags[0].name", "Tag can not be empty"));
+    }
+
     @Test
     public void shouldResponse400HttpCodeWhenCreatesWithEmptyPriceFields(){
         //given
@@ -304,6 +590,27 @@ public class ProductEndpointTest extends SpringAppApplicationTests {
         assertThat(result.getBody().getDescription().getText()).isEqualTo(requestDto.getDescription().getText());
     }
 
+    @Test
+    public void shouldResponse412HttpCodeWhenUpdatesWithStaleIfMatch(){
+        //given
+        ProductResponseDto existingProduct = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build());
+        final String url = productsUrl + existingProduct.getId();
+        String eTag = httpClient.getForEntity(url, ProductResponseDto.class).getHeaders().getETag();
+        final String productJson = mapToJson(new ProductRequestDtoBuilder("product2",
+                new PriceDto("100", "PLN")).build());
+        //when
+        ResponseEntity<ProductResponseDto> first = httpClient.exchange(url, HttpMethod.PUT,
+                getHttpRequest(productJson, eTag), ProductResponseDto.class);
+        ResponseEntity<ProductResponseDto> second = httpClient.exchange(url, HttpMethod.PUT,
+                getHttpRequest(productJson, eTag), ProductResponseDto.class);
+        //then
+        assertThat(first.getStatusCodeValue()).isEqualTo(200);
+        assertThat(first.getBody().getVersion()).isEqualTo(2);
+        assertThat(second.getStatusCodeValue()).isEqualTo(412);
+        assertThat(productFacade.findById(existingProduct.getId()).getVersion()).isEqualTo(2);
+    }
+
     @Test
     public void shouldResponse400HttpCodeWhenDescriptionIsTooLong(){
         //given
@@ -372,20 +679,33 @@ public class ProductEndpointTest extends SpringAppApplicationTests {
         assertThat(result.getStatusCodeValue()).isEqualTo(404);
     }
 
-    String mapToJson (ProductRequestDto productRequestDto){
+    String mapToJson (Object requestDto){
         try {
-            return objectMapper.writeValueAsString(productRequestDto);
+            return objectMapper.writeValueAsString(requestDto);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private HttpEntity<Void> getConditionalRequest(String eTag){
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+        return new HttpEntity<>(headers);
+    }
+
     private HttpEntity<String> getHttpRequest(String json){
         HttpHeaders httpHeaders =  new HttpHeaders();
         httpHeaders.set("content-type","application/json");
         return new HttpEntity<>(json, httpHeaders);
     }
 
+    private HttpEntity<String> getHttpRequest(String json, String ifMatch){
+        HttpHeaders httpHeaders =  new HttpHeaders();
+        httpHeaders.set("content-type","application/json");
+        httpHeaders.setIfMatch(ifMatch);
+        return new HttpEntity<>(json, httpHeaders);
+    }
+
     String jsonWithoutPriceField (String name){
         return "{ \"name\": \""+ name +"\" }";
     }
@@ -0,0 +1,234 @@
+package pl.zaradny.springApp.api;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import pl.zaradny.springApp.domain.*;
+import pl.zaradny.springApp.testUtils.ProductRequestDtoBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ReactiveProductEndpointTest {
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @Autowired
+    private ReactiveProductFacade productFacade;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    public void shouldGetExistingProduct(){
+        //given
+        ProductResponseDto existingProduct = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build()).block();
+        //when
+        ProductResponseDto result = webClient.get().uri("/products/{id}", existingProduct.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ProductResponseDto.class)
+                .returnResult().getResponseBody();
+        //then
+        assertThat(result).isEqualToComparingFieldByField(existingProduct);
+    }
+
+    @Test
+    public void shouldNotStartServletOnlyChangeFeedOrJsonCache(){
+        //when
+        int feeds = context.getBeansOfType(ProductChangeFeed.class).size();
+        int caches = context.getBeansOfType(ProductJsonCache.class).size();
+        //then
+        assertThat(feeds).isZero();
+        assertThat(caches).isZero();
+    }
+
+    @Test
+    public void shouldGetProductsWithTagFromRequestParam(){
+        //given
+        productFacade.create(new ProductRequestDtoBuilder("tagged", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("tag"))).build()).block();
+        productFacade.create(new ProductRequestDtoBuilder("other", new PriceDto("100", "PLN")).build()).block();
+        //when
+        ProductsResponseDto result = webClient.get().uri("/products?tag=tag")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ProductsResponseDto.class)
+                .returnResult().getResponseBody();
+        //then
+        assertThat(result.getProducts()).extracting(ProductResponseDto::getName).containsExactly("tagged");
+    }
+
+    @Test
+    public void shouldResponse304HttpCodeWhenProductIsNotModified(){
+        //given
+        ProductResponseDto existingProduct = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build()).block();
+        String eTag = webClient.get().uri("/products/{id}", existingProduct.getId()).exchange()
+                .returnResult(ProductResponseDto.class).getResponseHeaders().getETag();
+        //when
+        WebTestClient.ResponseSpec notModified = webClient.get().uri("/products/{id}", existingProduct.getId())
+                .ifNoneMatch(eTag).exchange();
+        productFacade.update(existingProduct.getId(), new ProductRequestDtoBuilder("renamed",
+                new PriceDto("100", "PLN")).build()).block();
+        WebTestClient.ResponseSpec modified = webClient.get().uri("/products/{id}", existingProduct.getId())
+                .ifNoneMatch(eTag).exchange();
+        //then
+        notModified.expectStatus().isNotModified().expectBody().isEmpty();
+        ProductResponseDto result = modified.expectStatus().isOk()
+                .expectBody(ProductResponseDto.class).returnResult().getResponseBody();
+        assertThat(result.getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldResponse304HttpCodeWhenNoProductWithTagChanged(){
+        //given
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("tag1"))).build()).block();
+        String eTag = webClient.get().uri("/products?tag=tag1").exchange()
+                .returnResult(ProductsResponseDto.class).getResponseHeaders().getETag();
+        //when
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("tag2"))).build()).block();
+        WebTestClient.ResponseSpec notModified = webClient.get().uri("/products?tag=tag1")
+                .ifNoneMatch(eTag).exchange();
+        productFacade.create(new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("tag1"))).build()).block();
+        WebTestClient.ResponseSpec modified = webClient.get().uri("/products?tag=tag1")
+                .ifNoneMatch(eTag).exchange();
+        //then
+        notModified.expectStatus().isNotModified();
+        ProductsResponseDto result = modified.expectStatus().isOk()
+                .expectBody(ProductsResponseDto.class).returnResult().getResponseBody();
+        assertThat(result.getProducts()).hasSize(2);
+    }
+
+    @Test
+    public void shouldResponse412HttpCodeWhenUpdatesWithStaleIfMatch(){
+        //given
+        ProductResponseDto existingProduct = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build()).block();
+        String eTag = webClient.get().uri("/products/{id}", existingProduct.getId()).exchange()
+                .returnResult(ProductResponseDto.class).getResponseHeaders().getETag();
+        ProductRequestDto update = new ProductRequestDtoBuilder("product2", new PriceDto("100", "PLN")).build();
+        //when
+        WebTestClient.ResponseSpec first = webClient.put().uri("/products/{id}", existingProduct.getId())
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(update)
+                .exchange();
+        WebTestClient.ResponseSpec second = webClient.put().uri("/products/{id}", existingProduct.getId())
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(update)
+                .exchange();
+        //then
+        first.expectStatus().isOk();
+        second.expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        assertThat(productFacade.findById(existingProduct.getId()).block().getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldResponse404HttpCodeWhenProductDoesNotExist(){
+        //when
+        WebTestClient.ResponseSpec result = webClient.get().uri("/products/missing").exchange();
+        //then
+        result.expectStatus().isNotFound();
+    }
+
+    @Test
+    public void shouldResponse400HttpCodeWhenPageLimitIsNotPositive(){
+        //when
+        WebTestClient.ResponseSpec result = webClient.get().uri("/products?limit=0").exchange();
+        //then
+        result.expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void shouldListEveryViolationWhenCreatesInvalidProduct(){
+        //given
+        final ProductRequestDto product = new ProductRequestDtoBuilder("", new PriceDto("ten", "PLN"))
+                .withTags(Lists.newArrayList(new TagDto("")))
+                .build();
+        //when
+        ValidationErrorResponseDto result = webClient.post().uri("/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(product)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(ValidationErrorResponseDto.class)
+                .returnResult().getResponseBody();
+        //then
+        assertThat(result.getViolations()).containsExactly(
+                new ViolationDto("name", "Product name can not be empty"),
+                new ViolationDto("price.amount", "Price amount must be a number"),
+                new ViolationDto("tags[0].name", "Tag can not be empty"));
+    }
+
+    @Test
+    public void shouldStreamAllProductsInIdOrderAtThePaceTheClientReadsThem(){
+        //given
+        // more products than the repository adapter reads per page, so the stream has to ask for further pages
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            ids.add(productFacade.create(new ProductRequestDtoBuilder("product" + i,
+                    new PriceDto("100", "PLN")).build()).block().getId());
+        }
+        //when
+        List<ProductResponseDto> streamed = webClient.get().uri("/products/stream")
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_STREAM_JSON)
+                .returnResult(ProductResponseDto.class)
+                .getResponseBody()
+                .limitRate(16)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+        //then
+        assertThat(streamed.stream().map(ProductResponseDto::getId).collect(Collectors.toList())).isEqualTo(ids);
+    }
+
+    @Test
+    public void shouldStopStreamingWhenClientCancels(){
+        //given
+        for (int i = 0; i < 600; i++) {
+            productFacade.create(new ProductRequestDtoBuilder("product" + i, new PriceDto("100", "PLN"))
+                    .build()).block();
+        }
+        //when
+        List<ProductResponseDto> streamed = webClient.get().uri("/products/stream")
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .exchange()
+                .returnResult(ProductResponseDto.class)
+                .getResponseBody()
+                .take(3)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+        //then
+        assertThat(streamed).hasSize(3);
+        assertThat(webClient.get().uri("/products?limit=1").exchange()
+                .expectStatus().isOk()
+                .expectBody(ProductsResponseDto.class)
+                .returnResult().getResponseBody().getProducts()).hasSize(1);
+    }
+}
@@ -0,0 +1,68 @@
+package pl.zaradny.springApp.domain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import pl.zaradny.springApp.exceptions.InvalidProductException;
+import pl.zaradny.springApp.exceptions.ProductNotFoundException;
+import pl.zaradny.springApp.infrastructure.InMemoryProductRepository;
+import pl.zaradny.springApp.testUtils.ProductRequestDtoBuilder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MeteredProductFacadeTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProductFacade productFacade = new MeteredProductFacade(new ProductFacadeImpl(
+            new InMemoryProductRepository(), List.of(), new UlidIdGenerator()), meterRegistry);
+
+    @Test
+    public void shouldTimeSuccessfulOperations() {
+        //given
+        ProductResponseDto created = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build());
+        //when
+        productFacade.findById(created.getId());
+        productFacade.findById(created.getId());
+        //then
+        assertThat(timerCount("create", "none")).isEqualTo(1);
+        assertThat(timerCount("findById", "none")).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldTagFailedOperationsWithExceptionType() {
+        //when
+        assertThatThrownBy(() -> productFacade.findById("missing")).isInstanceOf(ProductNotFoundException.class);
+        assertThatThrownBy(() -> productFacade.create(new ProductRequestDtoBuilder("",
+                new PriceDto("abc", "PLN")).build())).isInstanceOf(InvalidProductException.class);
+        //then
+        assertThat(timerCount("findById", "ProductNotFoundException")).isEqualTo(1);
+        assertThat(timerCount("findById", "none")).isEqualTo(0);
+        assertThat(timerCount("create", "InvalidProductException")).isEqualTo(1);
+        assertThat(meterRegistry.find("products.validation.violations").tag("field", "name").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.find("products.validation.violations").tag("field", "price.amount").counter()
+                .count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void shouldCountViolationsOfListElementsUnderOneField() {
+        //when
+        assertThatThrownBy(() -> productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).withTags(List.of(new TagDto(""), new TagDto(""))).build()))
+                .isInstanceOf(InvalidProductException.class);
+        //then
+        assertThat(meterRegistry.find("products.validation.violations").tag("field", "tags.name").counter().count())
+                .isEqualTo(2.0);
+        assertThat(meterRegistry.find("products.validation.violations").tag("field", "tags[0].name").counter())
+                .isNull();
+    }
+
+    private long timerCount(String operation, String exception) {
+        return meterRegistry.find("products.facade").tag("operation", operation).tag("exception", exception)
+                .timer().count();
+    }
+}
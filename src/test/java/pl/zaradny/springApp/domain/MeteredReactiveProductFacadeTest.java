@@ -0,0 +1,61 @@
+package pl.zaradny.springApp.domain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import pl.zaradny.springApp.exceptions.BadPageLimitException;
+import pl.zaradny.springApp.exceptions.InvalidProductException;
+import pl.zaradny.springApp.exceptions.ProductNotFoundException;
+import pl.zaradny.springApp.infrastructure.InMemoryProductRepository;
+import pl.zaradny.springApp.infrastructure.ReactiveProductRepositoryAdapter;
+import pl.zaradny.springApp.testUtils.ProductRequestDtoBuilder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MeteredReactiveProductFacadeTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReactiveProductFacade productFacade = new MeteredReactiveProductFacade(
+            new ReactiveProductFacadeImpl(new ReactiveProductRepositoryAdapter(new InMemoryProductRepository()),
+                    List.of(), new UlidIdGenerator()), meterRegistry);
+
+    @Test
+    public void shouldTimeOperationsWhenSubscribed() {
+        //given
+        ProductResponseDto created = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build()).block();
+        //when
+        productFacade.findById(created.getId());
+        productFacade.findById(created.getId()).block();
+        productFacade.search("product", 10).collectList().block();
+        //then
+        assertThat(timerCount("create", "none")).isEqualTo(1);
+        assertThat(timerCount("findById", "none")).isEqualTo(1);
+        assertThat(timerCount("search", "none")).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldTagFailedOperationsWithExceptionType() {
+        //when
+        assertThatThrownBy(() -> productFacade.findById("missing").block())
+                .isInstanceOf(ProductNotFoundException.class);
+        assertThatThrownBy(() -> productFacade.search("product", 0).collectList().block())
+                .isInstanceOf(BadPageLimitException.class);
+        assertThatThrownBy(() -> productFacade.create(new ProductRequestDtoBuilder("",
+                new PriceDto("100", "PLN")).build()).block()).isInstanceOf(InvalidProductException.class);
+        //then
+        assertThat(timerCount("findById", "ProductNotFoundException")).isEqualTo(1);
+        assertThat(timerCount("search", "BadPageLimitException")).isEqualTo(1);
+        assertThat(timerCount("create", "InvalidProductException")).isEqualTo(1);
+        assertThat(meterRegistry.find("products.validation.violations").tag("field", "name").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    private long timerCount(String operation, String exception) {
+        return meterRegistry.find("products.reactive.facade").tag("operation", operation)
+                .tag("exception", exception).timer().count();
+    }
+}
@@ -0,0 +1,116 @@
+package pl.zaradny.springApp.domain;
+
+import org.junit.Test;
+import pl.zaradny.springApp.exceptions.InvalidProductException;
+import pl.zaradny.springApp.exceptions.ProductUpdateContendedException;
+import pl.zaradny.springApp.exceptions.ProductVersionConflictException;
+import pl.zaradny.springApp.infrastructure.InMemoryProductRepository;
+import pl.zaradny.springApp.testUtils.ProductRequestDtoBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ProductFacadeImplTest {
+
+    private final ProductFacadeImpl productFacade = new ProductFacadeImpl(new InMemoryProductRepository(), List.of(),
+            new UlidIdGenerator());
+
+    @Test
+    public void shouldReturnProjectionBuiltAtWriteTimeOnEveryRead() {
+        //given
+        ProductResponseDto created = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).withTags(List.of(new TagDto("tag"))).build());
+        //when
+        ProductResponseDto byId = productFacade.findById(created.getId());
+        ProductResponseDto inListing = productFacade.getAll().getProducts().get(0);
+        ProductResponseDto byTag = productFacade.findByTag("tag").getProducts().get(0);
+        //then
+        assertThat(byId).isSameAs(created);
+        assertThat(inListing).isSameAs(created);
+        assertThat(byTag).isSameAs(created);
+    }
+
+    @Test
+    public void shouldReplaceProjectionOnUpdate() {
+        //given
+        ProductResponseDto created = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build());
+        //when
+        ProductResponseDto updated = productFacade.update(created.getId(), new ProductRequestDtoBuilder("renamed",
+                new PriceDto("100", "PLN")).build());
+        //then
+        assertThat(productFacade.findById(created.getId())).isSameAs(updated);
+        assertThat(updated.getName()).isEqualTo("renamed");
+    }
+
+    @Test
+    public void shouldReportImageUrlWithBadPortAsViolation() {
+        //given
+        ProductRequestDto request = new ProductRequestDtoBuilder("product", new PriceDto("100", "PLN"))
+                .withImage(new ImageDto("https://via.placeholder.com:port/150")).build();
+        //when
+        Throwable thrown = catchThrowable(() -> productFacade.create(request));
+        //then
+        assertThat(thrown).isInstanceOf(InvalidProductException.class);
+        assertThat(((InvalidProductException) thrown).getViolations())
+                .containsExactly(new ViolationDto("image.url", "Image URL is not correct"));
+    }
+
+    @Test
+    public void shouldFailOnlyMalformedOperationsOfBatch() {
+        //given
+        ProductResponseDto existing = productFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build());
+        BatchRequestDto batch = new BatchRequestDto(Arrays.asList(
+                new BatchOperationDto("update", null, new ProductRequestDtoBuilder("renamed",
+                        new PriceDto("100", "PLN")).build()),
+                null,
+                new BatchOperationDto("delete", existing.getId(), null)));
+        //when
+        List<BatchResultDto> results = productFacade.applyBatch(batch).getResults();
+        //then
+        assertThat(results).extracting(BatchResultDto::getStatus).containsExactly(400, 400, 204);
+    }
+
+    @Test
+    public void shouldReportUnexpectedFailureOfOperationAsServerErrorOfThatOperation() {
+        //given
+        ProductFacadeImpl failingFacade = new ProductFacadeImpl(new InMemoryProductRepository(), List.of(), () -> {
+            throw new IllegalStateException("id source is down");
+        });
+        BatchRequestDto batch = new BatchRequestDto(Arrays.asList(
+                new BatchOperationDto("create", null, new ProductRequestDtoBuilder("product",
+                        new PriceDto("100", "PLN")).build()),
+                new BatchOperationDto("delete", "missing", null)));
+        //when
+        List<BatchResultDto> results = failingFacade.applyBatch(batch).getResults();
+        //then
+        assertThat(results).extracting(BatchResultDto::getStatus).containsExactly(500, 404);
+    }
+
+    @Test
+    public void shouldGiveUpUpdateThatKeepsLosingCompareAndSet() {
+        //given
+        AtomicInteger attempts = new AtomicInteger();
+        InMemoryProductRepository contendedRepository = new InMemoryProductRepository() {
+            @Override
+            public Product update(Product oldProduct, Product newProduct) {
+                attempts.incrementAndGet();
+                throw new ProductVersionConflictException();
+            }
+        };
+        ProductFacadeImpl contendedFacade = new ProductFacadeImpl(contendedRepository, List.of(),
+                new UlidIdGenerator());
+        ProductResponseDto created = contendedFacade.create(new ProductRequestDtoBuilder("product",
+                new PriceDto("100", "PLN")).build());
+        //when then
+        assertThatThrownBy(() -> contendedFacade.update(created.getId(), new ProductRequestDtoBuilder("renamed",
+                new PriceDto("100", "PLN")).build())).isInstanceOf(ProductUpdateContendedException.class);
+        assertThat(attempts.get()).isEqualTo(16);
+    }
+}
@@ -0,0 +1,94 @@
+package pl.zaradny.springApp.domain;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+import pl.zaradny.springApp.testUtils.ProductRequestDtoBuilder;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProductRequestValidatorTest {
+
+    private final ProductRequestValidator validator = new ProductRequestValidator();
+
+    @Test
+    public void shouldAcceptValidRequest() {
+        //given
+        ProductRequestDto request = validRequest();
+        //when
+        List<ViolationDto> violations = validator.validate(request);
+        //then
+        assertThat(violations).isEmpty();
+    }
+
+    @Test
+    public void shouldReportEveryViolationOfRequest() {
+        //given
+        ProductRequestDto request = invalidRequest();
+        //when
+        List<ViolationDto> violations = validator.validate(request);
+        //then
+        assertThat(violations).containsExactly(
+                new ViolationDto("name", "Product name can not be empty"),
+                new ViolationDto("price.amount", "Price amount must be a number"),
+                new ViolationDto("price.currency", "Price currency must be an ISO 4217 code"),
+                new ViolationDto("image.url", "Image URL is not correct"),
+                new ViolationDto("description.text", "Description can not be longer than 400 characters"),
+                new ViolationDto("tags[1].name", "Tag can not be empty"));
+    }
+
+    @Test
+    public void shouldAcceptSameAmountsAsBigDecimal() {
+        //given
+        List<String> amounts = Arrays.asList("100", "-1.5", "+.5", "5.", "1e3", "1.2E-10", "", ".", "-", "1e",
+                "1.2.3", "12a", "0x10", "1e12345678901", " 1");
+        //when
+        for (String amount : amounts) {
+            //then
+            assertThat(Price.isValidAmount(amount)).as(amount).isEqualTo(parsesAsBigDecimal(amount));
+        }
+    }
+
+    private static boolean parsesAsBigDecimal(String amount) {
+        try {
+            new BigDecimal(amount);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void shouldReportImageUrlWithBadHostOrPort() {
+        //given
+        ProductRequestDto badPort = new ProductRequestDtoBuilder("product", new PriceDto("10.99", "PLN"))
+                .withImage(new ImageDto("https://via.placeholder.com:port/150")).build();
+        ProductRequestDto badHost = new ProductRequestDtoBuilder("product", new PriceDto("10.99", "PLN"))
+                .withImage(new ImageDto("https://via placeholder.com/150")).build();
+        //when
+        List<ViolationDto> badPortViolations = validator.validate(badPort);
+        List<ViolationDto> badHostViolations = validator.validate(badHost);
+        //then
+        assertThat(badPortViolations).containsExactly(new ViolationDto("image.url", "Image URL is not correct"));
+        assertThat(badHostViolations).containsExactly(new ViolationDto("image.url", "Image URL is not correct"));
+    }
+
+    private static ProductRequestDto validRequest() {
+        return new ProductRequestDtoBuilder("product", new PriceDto("10.99", "PLN"))
+                .withImage(new ImageDto("https://via.placeholder.com/150"))
+                .withDescription(new DescriptionDto("description"))
+                .withTags(Arrays.asList(new TagDto("tag1"), new TagDto("tag2")))
+                .build();
+    }
+
+    private static ProductRequestDto invalidRequest() {
+        return new ProductRequestDtoBuilder("", new PriceDto("ten", "XYZ"))
+                .withImage(new ImageDto("siema"))
+                .withDescription(new DescriptionDto(Strings.repeat("a", 401)))
+                .withTags(Arrays.asList(new TagDto("tag1"), new TagDto("")))
+                .build();
+    }
+}
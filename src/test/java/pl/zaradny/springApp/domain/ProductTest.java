@@ -0,0 +1,115 @@
+package pl.zaradny.springApp.domain;
+
+import org.junit.Test;
+
+import java.security.Permission;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeNoException;
+
+public class ProductTest {
+
+    @Test
+    public void shouldReturnSameTagInstanceForEqualNames() {
+        //given
+        String name = "tag";
+        String sameName = new StringBuilder("t").append("ag").toString();
+        //when
+        Tag tag = Tag.build(name);
+        Tag sameTag = Tag.build(sameName);
+        //then
+        assertThat(sameTag).isSameAs(tag);
+    }
+
+    @Test
+    public void shouldShareEqualTagSetsBetweenProducts() {
+        //given
+        Set<Tag> tags = Set.of(Tag.build("a"), Tag.build("b"));
+        Set<Tag> sameTags = Set.of(Tag.build("b"), Tag.build("a"));
+        //when
+        Product first = product(0, tags);
+        Product second = product(1, sameTags);
+        //then
+        assertThat(second.getTags().get()).isSameAs(first.getTags().get());
+    }
+
+    @Test
+    public void shouldCompareImagesByCanonicalUri() {
+        //given
+        Image image = Image.build("HTTPS://Images.Example.com:443/products/../150.png");
+        //when
+        Image sameImage = Image.build("https://images.example.com/150.png");
+        //then
+        assertThat(sameImage).isEqualTo(image);
+        assertThat(sameImage.hashCode()).isEqualTo(image.hashCode());
+        assertThat(image.getUrl()).isEqualTo("HTTPS://Images.Example.com:443/products/../150.png");
+    }
+
+    @Test
+    public void shouldNotTreatImagesOnHostsWithTheSameAddressAsEqual() {
+        //given
+        Image byName = Image.build("http://localhost/150.png");
+        //when
+        Image byAddress = Image.build("http://127.0.0.1/150.png");
+        //then
+        assertThat(byName).isNotEqualTo(byAddress);
+    }
+
+    @Test
+    public void shouldHashAndCompareProductsWithoutResolvingImageHosts() {
+        //given
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            products.add(product(i, Set.of(Tag.build("tag")),
+                    Image.build("http://images" + i % 10 + ".example.invalid/" + i + ".png")));
+        }
+        // Every host lookup asks the security manager first, so one refusing them all catches any resolution.
+        SecurityManager noLookups = new SecurityManager() {
+            @Override
+            public void checkConnect(String host, int port) {
+                throw new AssertionError("Resolved " + host);
+            }
+
+            @Override
+            public void checkPermission(Permission permission) {
+            }
+        };
+        try {
+            System.setSecurityManager(noLookups);
+        } catch (UnsupportedOperationException e) {
+            assumeNoException("The security manager is disabled in this JVM", e);
+        }
+        //when
+        Set<Product> distinct;
+        boolean equal;
+        try {
+            distinct = new HashSet<>(products);
+            equal = products.get(1).getImage().equals(products.get(11).getImage());
+        } finally {
+            System.setSecurityManager(null);
+        }
+        //then
+        assertThat(distinct).hasSize(100);
+        assertThat(equal).isFalse();
+    }
+
+    private static Product product(int id, Set<Tag> tags) {
+        return product(id, tags, null);
+    }
+
+    private static Product product(int id, Set<Tag> tags, Image image) {
+        return Product.build()
+                .withId(String.valueOf(id))
+                .withName("product")
+                .withPrice(Price.build("100", "PLN"))
+                .withCreatedAt(LocalDateTime.now())
+                .withImage(image)
+                .withTags(tags)
+                .build();
+    }
+}
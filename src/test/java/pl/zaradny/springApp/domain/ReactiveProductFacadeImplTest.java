@@ -0,0 +1,95 @@
+package pl.zaradny.springApp.domain;
+
+import org.junit.Test;
+import pl.zaradny.springApp.exceptions.InvalidProductException;
+import pl.zaradny.springApp.exceptions.ProductNotFoundException;
+import pl.zaradny.springApp.exceptions.ProductUpdateContendedException;
+import pl.zaradny.springApp.exceptions.ProductVersionConflictException;
+import pl.zaradny.springApp.infrastructure.InMemoryProductRepository;
+import pl.zaradny.springApp.infrastructure.ReactiveProductRepositoryAdapter;
+import pl.zaradny.springApp.testUtils.ProductRequestDtoBuilder;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReactiveProductFacadeImplTest {
+
+    private final InMemoryProductRepository repository = new InMemoryProductRepository();
+    private final ReactiveProductFacade productFacade = new ReactiveProductFacadeImpl(
+            new ReactiveProductRepositoryAdapter(repository), List.of(), new UlidIdGenerator());
+
+    @Test
+    public void shouldCreateAndFindProduct() {
+        //given
+        ProductResponseDto created = productFacade.create(request("product", "tag")).block();
+        //when
+        ProductResponseDto found = productFacade.findById(created.getId()).block();
+        //then
+        assertThat(found).isSameAs(created);
+        assertThat(repository.findById(created.getId()).getName()).isEqualTo("product");
+    }
+
+    @Test
+    public void shouldStreamAllProductsAcrossPagesInIdOrder() {
+        //given
+        for (int i = 0; i < 600; i++) {
+            productFacade.create(request("product " + i, i % 3 == 0 ? "third" : "other")).block();
+        }
+        //when
+        List<String> all = ids(productFacade.getAll().collectList().block());
+        List<String> tagged = ids(productFacade.findByTag("third").collectList().block());
+        //then
+        assertThat(all).hasSize(600);
+        assertThat(all).isSorted();
+        assertThat(tagged).hasSize(200);
+        assertThat(tagged).isSorted();
+    }
+
+    @Test
+    public void shouldSignalFailuresWithFacadeExceptions() {
+        //given
+        ProductResponseDto created = productFacade.create(request("product", "tag")).block();
+        productFacade.update(created.getId(), request("renamed", "tag")).block();
+        //when then
+        assertThatThrownBy(() -> productFacade.findById("missing").block())
+                .isInstanceOf(ProductNotFoundException.class);
+        assertThatThrownBy(() -> productFacade.update(created.getId(), request("stale", "tag"), 1).block())
+                .isInstanceOf(ProductVersionConflictException.class);
+        assertThatThrownBy(() -> productFacade.create(request("", "tag")).block())
+                .isInstanceOf(InvalidProductException.class);
+        assertThat(productFacade.findById(created.getId()).block().getName()).isEqualTo("renamed");
+    }
+
+    @Test
+    public void shouldGiveUpUpdateThatKeepsLosingCompareAndSet() {
+        //given
+        AtomicInteger attempts = new AtomicInteger();
+        InMemoryProductRepository contendedRepository = new InMemoryProductRepository() {
+            @Override
+            public Product update(Product oldProduct, Product newProduct) {
+                attempts.incrementAndGet();
+                throw new ProductVersionConflictException();
+            }
+        };
+        ReactiveProductFacade contendedFacade = new ReactiveProductFacadeImpl(
+                new ReactiveProductRepositoryAdapter(contendedRepository), List.of(), new UlidIdGenerator());
+        ProductResponseDto created = contendedFacade.create(request("product", "tag")).block();
+        //when then
+        assertThatThrownBy(() -> contendedFacade.update(created.getId(), request("renamed", "tag")).block())
+                .isInstanceOf(ProductUpdateContendedException.class);
+        assertThat(attempts.get()).isEqualTo(16);
+    }
+
+    private static ProductRequestDto request(String name, String tag) {
+        return new ProductRequestDtoBuilder(name, new PriceDto("100", "PLN")).withTags(List.of(new TagDto(tag)))
+                .build();
+    }
+
+    private static List<String> ids(List<ProductResponseDto> products) {
+        return products.stream().map(ProductResponseDto::getId).collect(Collectors.toList());
+    }
+}
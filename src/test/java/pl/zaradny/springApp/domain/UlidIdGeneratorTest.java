@@ -0,0 +1,92 @@
+package pl.zaradny.springApp.domain;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UlidIdGeneratorTest {
+
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    @Test
+    public void shouldGenerateIncreasingIdsWithinThread() {
+        //given
+        UlidIdGenerator generator = new UlidIdGenerator();
+        //when
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(generator.nextId());
+        }
+        //then
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(ids.get(i).compareTo(ids.get(i - 1))).isPositive();
+        }
+        assertThat(ids.get(0)).hasSize(26).matches("[0-9A-HJKMNP-TV-Z]+");
+    }
+
+    @Test
+    public void shouldOrderIdsByCreationTime() throws Exception {
+        //given
+        UlidIdGenerator generator = new UlidIdGenerator();
+        String earlier = generator.nextId();
+        Thread.sleep(2);
+        //when
+        String later = runOnOtherThread(generator);
+        //then
+        assertThat(later.compareTo(earlier)).isPositive();
+    }
+
+    @Test
+    public void shouldNotRepeatIdsAcrossThreads() throws Exception {
+        //given
+        final int idsPerThread = 100_000;
+        Set<String> unique = ConcurrentHashMap.newKeySet();
+        //when
+        generateConcurrently(new UlidIdGenerator(), idsPerThread, unique::add);
+        //then
+        assertThat(unique).hasSize(THREADS * idsPerThread);
+    }
+
+    private static void generateConcurrently(IdGenerator generator, int idsPerThread, Consumer<String> consumer)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < idsPerThread; i++) {
+                    consumer.accept(generator.nextId());
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String runOnOtherThread(IdGenerator generator) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(generator::nextId).get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.junit.Test;
+import pl.zaradny.springApp.domain.Price;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.domain.TagQuery;
+import pl.zaradny.springApp.exceptions.ProductNotFoundException;
+import pl.zaradny.springApp.exceptions.ProductVersionConflictException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class InMemoryProductRepositoryTest {
+
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    @Test
+    public void shouldNotLoseProductsSavedConcurrently() throws Exception {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        final int perThread = 10_000;
+        //when
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < perThread; i++) {
+                repository.save(product(thread + "-" + i, "product"));
+            }
+        });
+        //then
+        assertThat(repository.getAll().count()).isEqualTo((long) THREADS * perThread);
+    }
+
+    @Test
+    public void shouldDeleteProductOnlyOnceWhenDeletedConcurrently() throws Exception {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.save(product("id", "product"));
+        AtomicInteger deleted = new AtomicInteger();
+        AtomicInteger notFound = new AtomicInteger();
+        //when
+        runConcurrently(THREADS, thread -> {
+            try {
+                repository.deleteById("id");
+                deleted.incrementAndGet();
+            } catch (ProductNotFoundException e) {
+                notFound.incrementAndGet();
+            }
+        });
+        //then
+        assertThat(deleted.get()).isEqualTo(1);
+        assertThat(notFound.get()).isEqualTo(THREADS - 1);
+    }
+
+    @Test
+    public void shouldNotResurrectDeletedProductOnUpdate() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        Product product = product("id", "product");
+        repository.save(product);
+        repository.deleteById("id");
+        //when
+        Throwable thrown = catchUpdate(repository, product, product("id", "product2"));
+        //then
+        assertThat(thrown).isInstanceOf(ProductNotFoundException.class);
+        assertThat(repository.getAll().count()).isZero();
+    }
+
+    @Test
+    public void shouldRejectUpdateBasedOnStaleVersion() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        Product original = product("id", "product");
+        repository.save(original);
+        Product winner = repository.update(original, nextVersion(original, "winner"));
+        //when
+        Throwable thrown = catchUpdate(repository, original, nextVersion(original, "loser"));
+        //then
+        assertThat(thrown).isInstanceOf(ProductVersionConflictException.class);
+        assertThat(repository.findById("id")).isEqualTo(winner);
+    }
+
+    @Test
+    public void shouldNotLoseContendedCompareAndSetUpdates() throws Exception {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        final int hotProducts = 4;
+        final int updatesPerThread = 20_000;
+        for (int i = 0; i < hotProducts; i++) {
+            repository.save(product(String.valueOf(i), "product"));
+        }
+        //when
+        runConcurrently(THREADS, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < updatesPerThread; i++) {
+                String id = String.valueOf(random.nextInt(hotProducts));
+                while (true) {
+                    Product current = repository.findById(id);
+                    try {
+                        repository.update(current, nextVersion(current, "product" + i));
+                        break;
+                    } catch (ProductVersionConflictException e) {
+                        // lost the race, retry on the newer version
+                    }
+                }
+            }
+        });
+        //then
+        long versions = repository.getAll().mapToLong(product -> product.getVersion() - 1).sum();
+        assertThat(versions).isEqualTo((long) THREADS * updatesPerThread);
+    }
+
+    @Test
+    public void shouldKeepTagIndexUpToDateOnUpdateAndDelete() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        Product tagged = product("1", "product", "a", "b");
+        repository.save(tagged);
+        repository.save(product("2", "product", "b"));
+        Product retagged = product("1", "product", "c");
+        //when
+        repository.update(tagged, retagged);
+        repository.deleteById("2");
+        //then
+        assertThat(repository.findByTag(Tag.build("a"))).isEmpty();
+        assertThat(repository.findByTag(Tag.build("b"))).isEmpty();
+        assertThat(repository.findByTag(Tag.build("c"))).containsExactly(retagged);
+    }
+
+    @Test
+    public void shouldCountModificationsPerTagBeforeAndAfterWrite() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        Product tagged = product("1", "product", "a");
+        repository.save(tagged);
+        repository.save(product("2", "product", "b"));
+        long countBefore = repository.modificationCount();
+        long aBefore = repository.modificationCount(Tag.build("a"));
+        long bBefore = repository.modificationCount(Tag.build("b"));
+        //when
+        repository.update(tagged, product("1", "product", "c"));
+        //then
+        assertThat(repository.modificationCount()).isEqualTo(countBefore + 1);
+        assertThat(repository.modificationCount(Tag.build("a"))).isEqualTo(aBefore + 1);
+        assertThat(repository.modificationCount(Tag.build("b"))).isEqualTo(bBefore);
+        assertThat(repository.modificationCount(Tag.build("c"))).isEqualTo(1);
+        assertThat(repository.modificationCount(Tag.build("never-used"))).isZero();
+    }
+
+    @Test
+    public void shouldCountProductsAndTagsInUse() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.save(product("1", "product", "a"));
+        repository.save(product("2", "product", "a"));
+        repository.save(product("3", "product", "b"));
+        //when
+        repository.deleteById("3");
+        //then
+        assertThat(repository.size()).isEqualTo(2);
+        assertThat(repository.tagCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldKeepTagFacetsUpToDateOnSaveUpdateAndDelete() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        Product retagged = product("1", "product", "shoes", "red");
+        repository.save(retagged);
+        repository.save(product("2", "product", "shoes", "blue"));
+        repository.save(product("3", "product", "shoes", "red"));
+        repository.save(product("4", "product", "hats", "red"));
+        //when
+        repository.update(retagged, product("1", "product", "hats", "blue"));
+        repository.deleteById("3");
+        //then
+        assertThat(repository.tagFacets(null, 10)).containsExactly(entry(Tag.build("blue"), 2),
+                entry(Tag.build("hats"), 2), entry(Tag.build("red"), 1), entry(Tag.build("shoes"), 1));
+        assertThat(repository.tagFacets(null, 1)).containsExactly(entry(Tag.build("blue"), 2));
+        assertThat(repository.tagFacets(Tag.build("hats"), 10)).containsExactly(entry(Tag.build("blue"), 1),
+                entry(Tag.build("red"), 1));
+        assertThat(repository.tagFacets(Tag.build("missing"), 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldFindTopFacetsWithinTagWithoutCountingEveryTag() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            // Tag t<n> is carried by about one product in n + 1, so overall counts differ from counts within a tag.
+            List<String> tags = new ArrayList<>();
+            for (int n = 0; n < 40; n++) {
+                if (random.nextInt(n + 1) == 0) {
+                    tags.add("t" + n);
+                }
+            }
+            repository.save(product(String.valueOf(i), "product", tags.toArray(new String[0])));
+        }
+        for (String within : Arrays.asList("t0", "t3", "t17")) {
+            Map<Tag, Integer> counted = new HashMap<>();
+            repository.getAll().map(product -> product.getTags().get())
+                    .filter(tags -> tags.contains(Tag.build(within)))
+                    .forEach(tags -> tags.forEach(tag -> counted.merge(tag, 1, Integer::sum)));
+            counted.remove(Tag.build(within));
+            List<Map.Entry<Tag, Integer>> expected = counted.entrySet().stream()
+                    .sorted(Map.Entry.<Tag, Integer>comparingByValue().reversed()
+                            .thenComparing(entry -> entry.getKey().getName()))
+                    .limit(5).collect(Collectors.toList());
+            //when
+            Map<Tag, Integer> facets = repository.tagFacets(Tag.build(within), 5);
+            //then
+            assertThat(new ArrayList<>(facets.entrySet())).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void shouldReturnPagesInIdOrder() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        for (String id : Arrays.asList("c", "a", "d", "b")) {
+            repository.save(product(id, "product", id.equals("d") ? "other" : "tag"));
+        }
+        //when
+        List<Product> firstPage = repository.getPage(null, 2);
+        List<Product> secondPage = repository.getPage("b", 2);
+        List<Product> taggedPage = repository.findByTag(Tag.build("tag"), "a", 10);
+        //then
+        assertThat(ids(firstPage)).containsExactly("a", "b");
+        assertThat(ids(secondPage)).containsExactly("c", "d");
+        assertThat(ids(taggedPage)).containsExactly("b", "c");
+    }
+
+    @Test
+    public void shouldStreamAllProductsInIdOrder() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        for (String id : Arrays.asList("c", "a", "b")) {
+            repository.save(product(id, "product"));
+        }
+        //when
+        List<Product> all = repository.getAll().collect(Collectors.toList());
+        //then
+        assertThat(ids(all)).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    public void shouldFindProductsInPriceRangeCheapestFirst() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        Product expensive = pricedProduct("1", "250", "PLN");
+        repository.save(expensive);
+        repository.save(pricedProduct("2", "99.99", "PLN"));
+        repository.save(pricedProduct("3", "100.00", "PLN"));
+        repository.save(pricedProduct("4", "150", "EUR"));
+        repository.save(pricedProduct("5", "200", "PLN"));
+        //when
+        repository.update(expensive, pricedProduct("1", "120", "PLN"));
+        repository.deleteById("5");
+        List<Product> inRange = repository.findByPriceRange(Currency.getInstance("PLN"), new BigDecimal("100"),
+                new BigDecimal("200"));
+        //then
+        assertThat(ids(inRange)).containsExactly("3", "1");
+        assertThat(ids(repository.findByPriceRange(Currency.getInstance("PLN"), null, new BigDecimal("100"))))
+                .containsExactly("2", "3");
+    }
+
+    @Test
+    public void shouldRankSearchResultsAndFollowUpdates() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        Product mug = product("1", "Red mug");
+        repository.save(mug);
+        repository.save(product("2", "Red red chair"));
+        repository.save(product("3", "Blue chair"));
+        repository.save(product("4", "Green lamp"));
+        //when
+        List<Product> red = repository.search("RED", 10);
+        repository.update(mug, product("1", "Blue mug"));
+        repository.deleteById("3");
+        //then
+        assertThat(ids(red)).containsExactly("2", "1");
+        assertThat(ids(repository.search("red", 10))).containsExactly("2");
+        assertThat(ids(repository.search("blue chair", 10))).containsExactly("1", "2");
+        assertThat(repository.search("lamp", 10)).hasSize(1);
+    }
+
+    @Test
+    public void shouldReturnSameTopResultsAsFullRankingWhenStoppingEarly() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        String[] words = {"red", "blue", "chair", "lamp", "mug", "table", "oak", "steel"};
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int word = 0; word < 1 + random.nextInt(6); word++) {
+                name.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            repository.save(product(String.format("%05d", i), name.toString()));
+        }
+        for (String query : List.of("red", "blue chair", "oak steel lamp", "mug missing")) {
+            //when
+            List<String> full = ids(repository.search(query, 1_000_000));
+            List<String> top = ids(repository.search(query, 10));
+            //then
+            assertThat(top).isEqualTo(full.subList(0, 10));
+        }
+    }
+
+    @Test
+    public void shouldAnswerBooleanTagQueriesInIdOrder() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.save(product("4", "product", "hats", "red"));
+        repository.save(product("1", "product", "shoes", "red"));
+        repository.save(product("3", "product", "shoes", "red", "sale"));
+        repository.save(product("2", "product", "shoes", "blue"));
+        repository.save(product("5", "product"));
+        //when
+        List<Product> shoesAndRed = repository.findByTags(query("shoes,red", null), null, 10);
+        List<Product> shoesAndRedNotOnSale = repository.findByTags(query("shoes,red,!sale", null), null, 10);
+        List<Product> hatsOrBlue = repository.findByTags(query("hats,blue", "any"), null, 10);
+        List<Product> notRed = repository.findByTags(query("!red", null), null, 10);
+        List<Product> secondPageOfShoes = repository.findByTags(query("shoes", null), "1", 1);
+        //then
+        assertThat(ids(shoesAndRed)).containsExactly("1", "3");
+        assertThat(ids(shoesAndRedNotOnSale)).containsExactly("1");
+        assertThat(ids(hatsOrBlue)).containsExactly("2", "4");
+        assertThat(ids(notRed)).containsExactly("2", "5");
+        assertThat(ids(secondPageOfShoes)).containsExactly("2");
+    }
+
+    @Test
+    public void shouldNotMatchDeletedProducts() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.save(product("1", "product", "a"));
+        repository.deleteById("1");
+        //when
+        repository.save(product("2", "product", "b"));
+        //then
+        assertThat(repository.findByTags(query("a", null), null, 10)).isEmpty();
+        assertThat(ids(repository.findByTags(query("b", null), null, 10))).containsExactly("2");
+        assertThat(ids(repository.findByTags(query("!a", null), null, 10))).containsExactly("2");
+    }
+
+    @Test
+    public void shouldPageThroughTagQueryInIdOrderWhileOrdinalsAreReordered() {
+        //given
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        List<Integer> shuffled = new ArrayList<>();
+        for (int i = 0; i < 6000; i++) {
+            shuffled.add(i);
+        }
+        // Ids out of order, then increasing, then deletes of three products in four.
+        Collections.shuffle(shuffled.subList(0, 4000), new Random(3));
+        for (int i : shuffled) {
+            repository.save(product(String.format("%05d", i), "product", "color" + i % 3));
+        }
+        for (int i = 0; i < 6000; i++) {
+            if (i % 4 != 1) {
+                repository.deleteById(String.format("%05d", i));
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 6000; i++) {
+            if (i % 3 == 1 && i % 4 == 1) {
+                expected.add(String.format("%05d", i));
+            }
+        }
+        //when
+        List<String> paged = new ArrayList<>();
+        String after = null;
+        List<Product> page;
+        do {
+            page = repository.findByTags(query("color1", null), after, 97);
+            paged.addAll(ids(page));
+            after = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+        } while (page.size() == 97);
+        //then
+        assertThat(paged).isEqualTo(expected);
+    }
+
+    private static Product nextVersion(Product product, String name) {
+        return Product.build()
+                .withId(product.getId())
+                .withName(name)
+                .withPrice(product.getPrice())
+                .withCreatedAt(product.getCreatedAt())
+                .withTags(Set.of())
+                .withVersion(product.getVersion() + 1)
+                .build();
+    }
+
+    private static Throwable catchUpdate(ProductRepository repository, Product oldProduct, Product newProduct) {
+        try {
+            repository.update(oldProduct, newProduct);
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private static void runConcurrently(int threads, IntConsumerTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(thread);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).collect(Collectors.toList());
+    }
+
+    private static Product pricedProduct(String id, String amount, String currency) {
+        return Product.build()
+                .withId(id)
+                .withName("product")
+                .withPrice(Price.build(amount, currency))
+                .withCreatedAt(LocalDateTime.now())
+                .withTags(Set.of())
+                .build();
+    }
+
+    static Product product(String id, String name, String... tags) {
+        return Product.build()
+                .withId(id)
+                .withName(name)
+                .withPrice(Price.build("100", "PLN"))
+                .withCreatedAt(LocalDateTime.now())
+                .withTags(Arrays.stream(tags).map(Tag::build).collect(Collectors.toSet()))
+                .build();
+    }
+
+    private static TagQuery query(String tags, String match) {
+        return TagQuery.parse(tags, match);
+    }
+
+    @FunctionalInterface
+    private interface IntConsumerTask {
+        void run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,61 @@
+package pl.zaradny.springApp.infrastructure;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.exceptions.ProductNotFoundException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static pl.zaradny.springApp.infrastructure.InMemoryProductRepositoryTest.product;
+
+public class MeteredProductRepositoryTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProductRepository repository = new MeteredProductRepository(new InMemoryProductRepository(),
+            meterRegistry);
+
+    @Test
+    public void shouldTimeSuccessfulOperations() {
+        //given
+        repository.save(product("1", "product", "tag"));
+        //when
+        repository.findById("1");
+        repository.findByTag(Tag.build("tag"));
+        repository.findByTag(Tag.build("tag"), null, 10);
+        //then
+        assertThat(timerCount("save", "none")).isEqualTo(1);
+        assertThat(timerCount("findById", "none")).isEqualTo(1);
+        assertThat(timerCount("findByTag", "none")).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldTagFailedOperationsWithExceptionType() {
+        //when
+        assertThatThrownBy(() -> repository.findById("missing")).isInstanceOf(ProductNotFoundException.class);
+        assertThatThrownBy(() -> repository.deleteById("missing")).isInstanceOf(ProductNotFoundException.class);
+        //then
+        assertThat(timerCount("findById", "ProductNotFoundException")).isEqualTo(1);
+        assertThat(timerCount("findById", "none")).isEqualTo(0);
+        assertThat(timerCount("deleteById", "ProductNotFoundException")).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldPassCountersThroughWithoutTimingThem() {
+        //given
+        repository.save(product("1", "product", "tag"));
+        //when
+        long modifications = repository.modificationCount();
+        int size = repository.size();
+        //then
+        assertThat(modifications).isEqualTo(1);
+        assertThat(size).isEqualTo(1);
+        assertThat(meterRegistry.find("products.repository").tag("operation", "size").timer()).isNull();
+    }
+
+    private long timerCount(String operation, String exception) {
+        return meterRegistry.find("products.repository").tag("operation", operation).tag("exception", exception)
+                .timer().count();
+    }
+}
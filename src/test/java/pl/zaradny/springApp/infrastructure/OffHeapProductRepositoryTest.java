@@ -0,0 +1,219 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.junit.Test;
+import pl.zaradny.springApp.domain.*;
+import pl.zaradny.springApp.exceptions.UnsupportedProductQueryException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.entry;
+import static pl.zaradny.springApp.infrastructure.InMemoryProductRepositoryTest.product;
+
+public class OffHeapProductRepositoryTest {
+
+    @Test
+    public void shouldReadBackEveryProductField() {
+        //given
+        OffHeapProductRepository repository = new OffHeapProductRepository();
+        Product product = Product.build()
+                .withId("1")
+                .withName("product")
+                .withPrice(Price.build(new BigDecimal("123456789012345678901234567890.55"), Currency.getInstance("EUR")))
+                .withCreatedAt(LocalDateTime.of(2019, 3, 1, 12, 30, 15, 123_456_789))
+                .withImage(Image.build("https://via.placeholder.com/150"))
+                .withDescription(Description.build("description"))
+                .withTags(Set.of(Tag.build("a"), Tag.build("b")))
+                .build();
+        Product withRequiredFields = product("2", "product2");
+        //when
+        repository.save(product);
+        repository.save(withRequiredFields);
+        //then
+        assertThat(repository.findById("1")).isEqualTo(product);
+        assertThat(repository.findById("2")).isEqualTo(withRequiredFields);
+    }
+
+    @Test
+    public void shouldKeepTagsUpToDateOnUpdateAndDelete() {
+        //given
+        OffHeapProductRepository repository = new OffHeapProductRepository();
+        Product first = product("1", "product", "a");
+        repository.save(first);
+        repository.save(product("2", "product", "a"));
+        Product updated = product("1", "product", "b");
+        //when
+        repository.update(first, updated);
+        repository.deleteById("2");
+        //then
+        assertThat(repository.findByTag(Tag.build("a"))).isEmpty();
+        assertThat(repository.findByTag(Tag.build("b"))).containsExactly(updated);
+        assertThat(repository.getPage(null, 10)).containsExactly(updated);
+    }
+
+    @Test
+    public void shouldPageThroughTagQueriesInIdOrderFromRowBitmaps() {
+        //given
+        OffHeapProductRepository repository = new OffHeapProductRepository();
+        // saved out of id order, and the deletes free rows that later saves reuse
+        for (int i = 99; i >= 0; i--) {
+            repository.save(product(String.format("%03d", i), "product", i % 2 == 0 ? "even" : "odd",
+                    i % 3 == 0 ? "third" : "other"));
+        }
+        for (int i = 0; i < 100; i += 10) {
+            repository.deleteById(String.format("%03d", i));
+        }
+        repository.save(product("100", "product", "even", "third"));
+        //when
+        List<String> paged = new ArrayList<>();
+        List<Product> page;
+        String after = null;
+        do {
+            page = repository.findByTag(Tag.build("even"), after, 7);
+            page.forEach(product -> paged.add(product.getId()));
+            after = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+        } while (page.size() == 7);
+        List<Product> evenThirds = repository.findByTags(TagQuery.parse("even,third,!odd", null), "050", 100);
+        //then
+        assertThat(paged).hasSize(41).isSorted();
+        assertThat(paged.get(0)).isEqualTo("002");
+        assertThat(evenThirds).extracting(Product::getId).containsExactly("054", "066", "072", "078", "084", "096",
+                "100");
+        assertThat(repository.tagFacets(null, 2)).containsExactly(entry(Tag.build("other"), 60),
+                entry(Tag.build("odd"), 50));
+        assertThat(repository.tagFacets(Tag.build("third"), 5)).containsExactly(entry(Tag.build("odd"), 17),
+                entry(Tag.build("even"), 14));
+        assertThat(repository.tagCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldRejectQueriesThatNeedPerProductIndexes() {
+        //given
+        OffHeapProductRepository repository = new OffHeapProductRepository();
+        repository.save(product("1", "product"));
+        //when
+        Throwable priceRange = catchThrowable(() -> repository.findByPriceRange(Currency.getInstance("PLN"), null,
+                null));
+        Throwable search = catchThrowable(() -> repository.search("product", 10));
+        //then
+        assertThat(priceRange).isInstanceOf(UnsupportedProductQueryException.class);
+        assertThat(search).isInstanceOf(UnsupportedProductQueryException.class);
+    }
+
+    @Test
+    public void shouldReuseRowsAndCompactDataUnderSteadyUpdates() {
+        //given
+        OffHeapProductRepository repository = new OffHeapProductRepository();
+        String longName = "x".repeat(10_000);
+        Product current = product("1", longName + 0, "a");
+        repository.save(current);
+        repository.save(product("2", "product", "a"));
+        //when
+        for (int i = 1; i <= 5_000; i++) {
+            Product updated = Product.build()
+                    .withId("1")
+                    .withName(longName + i)
+                    .withPrice(current.getPrice())
+                    .withCreatedAt(current.getCreatedAt())
+                    .withTags(current.getTags().get())
+                    .withVersion(current.getVersion() + 1)
+                    .build();
+            current = repository.update(current, updated);
+        }
+        repository.deleteById("2");
+        Product third = product("3", "product", "b");
+        repository.save(third);
+        //then
+        assertThat(repository.allocatedRows()).isEqualTo(3);
+        assertThat(repository.allocatedDataBytes()).isLessThanOrEqualTo(2L << 24);
+        assertThat(repository.findById("1")).isEqualTo(current);
+        assertThat(repository.findById("3")).isEqualTo(third);
+        assertThat(repository.getAll().map(Product::getId).toArray()).containsExactly("1", "3");
+    }
+
+    @Test
+    public void shouldMoveEveryLiveValueOutOfCompactedChunk() {
+        //given
+        OffHeapProductRepository repository = new OffHeapProductRepository();
+        String longName = "x".repeat(1_000);
+        // about 20 MB of names, so the first chunk fills up and the next one is being appended to
+        for (int i = 0; i < 20_000; i++) {
+            repository.save(product(String.format("%05d", i), longName + i, "tag" + i % 3));
+        }
+        //when
+        for (int i = 0; i < 20_000; i++) {
+            if (i % 5 != 0) {
+                repository.deleteById(String.format("%05d", i));
+            }
+        }
+        //then
+        assertThat(repository.allocatedDataBytes()).isEqualTo(1L << 24);
+        assertThat(repository.size()).isEqualTo(4_000);
+        for (int i = 0; i < 20_000; i += 5) {
+            Product product = repository.findById(String.format("%05d", i));
+            assertThat(product.getName()).isEqualTo(longName + i);
+            assertThat(product.getTags().get()).containsExactly(Tag.build("tag" + i % 3));
+        }
+    }
+
+    @Test
+    public void shouldNeverReturnTornProductWhileRowsAreRecycled() throws Exception {
+        //given
+        OffHeapProductRepository repository = new OffHeapProductRepository();
+        String longName = "x".repeat(5_000);
+        for (int i = 0; i < 10; i++) {
+            repository.save(versioned(String.valueOf(i), longName, 1));
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(2);
+        List<Future<Integer>> torn = new ArrayList<>();
+        for (int reader = 0; reader < 2; reader++) {
+            torn.add(readers.submit(() -> {
+                int mismatches = 0;
+                while (writing.get()) {
+                    for (int i = 0; i < 10; i++) {
+                        Product product = repository.findById(String.valueOf(i));
+                        if (!product.getName().equals(longName + product.getVersion())) {
+                            mismatches++;
+                        }
+                    }
+                }
+                return mismatches;
+            }));
+        }
+        //when
+        for (int version = 2; version <= 2_000; version++) {
+            for (int i = 0; i < 10; i++) {
+                repository.update(repository.findById(String.valueOf(i)), versioned(String.valueOf(i), longName,
+                        version));
+            }
+        }
+        writing.set(false);
+        //then
+        for (Future<Integer> mismatches : torn) {
+            assertThat(mismatches.get()).isEqualTo(0);
+        }
+        readers.shutdown();
+    }
+
+    private static Product versioned(String id, String name, long version) {
+        return Product.build()
+                .withId(id)
+                .withName(name + version)
+                .withPrice(Price.build("100", "PLN"))
+                .withCreatedAt(LocalDateTime.of(2019, 3, 1, 12, 0))
+                .withTags(Set.of())
+                .withVersion(version)
+                .build();
+    }
+}
@@ -0,0 +1,144 @@
+package pl.zaradny.springApp.infrastructure;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pl.zaradny.springApp.domain.Product;
+import pl.zaradny.springApp.domain.Tag;
+import pl.zaradny.springApp.exceptions.TooLargeProductException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static pl.zaradny.springApp.infrastructure.InMemoryProductRepositoryTest.product;
+
+public class WriteAheadLogProductRepositoryTest {
+
+    private Path logFile;
+
+    @Before
+    public void init() throws IOException {
+        logFile = Files.createTempFile("products", ".wal");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        Files.deleteIfExists(logFile);
+    }
+
+    @Test
+    public void shouldRebuildProductsFromLogOnStartup() throws IOException {
+        //given
+        Product first = product("1", "product", "tag");
+        Product second = product("2", "product");
+        Product updated = product("1", "product2", "other");
+        try (WriteAheadLogProductRepository repository = open(FsyncPolicy.ALWAYS)) {
+            repository.save(first);
+            repository.save(second);
+            repository.update(first, updated);
+            repository.deleteById("2");
+        }
+        //when
+        try (WriteAheadLogProductRepository reopened = open(FsyncPolicy.ALWAYS)) {
+            //then
+            assertThat(reopened.getAll().count()).isEqualTo(1L);
+            assertThat(reopened.findById("1")).isEqualTo(updated);
+            assertThat(reopened.findByTag(Tag.build("tag"))).isEmpty();
+            assertThat(reopened.findByTag(Tag.build("other"))).containsExactly(updated);
+        }
+    }
+
+    @Test
+    public void shouldDropTornRecordAtTheEndOfLog() throws IOException {
+        //given
+        Product product = product("1", "product");
+        try (WriteAheadLogProductRepository repository = open(FsyncPolicy.NEVER)) {
+            repository.save(product);
+            repository.save(product("2", "product"));
+        }
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        //when
+        try (WriteAheadLogProductRepository reopened = open(FsyncPolicy.NEVER)) {
+            reopened.save(product("3", "product"));
+        }
+        //then
+        try (WriteAheadLogProductRepository reopened = open(FsyncPolicy.NEVER)) {
+            assertThat(reopened.getAll().map(Product::getId).toArray()).containsExactly("1", "3");
+        }
+    }
+
+    @Test
+    public void shouldDropRecordWithIntactChecksumThatEndsBeforeItsVersion() throws IOException {
+        //given
+        try (WriteAheadLogProductRepository repository = open(FsyncPolicy.NEVER)) {
+            repository.save(product("1", "product"));
+            repository.save(product("2", "product"));
+        }
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(logFile));
+        int second = 8 + log.getInt(0);
+        ByteBuffer payload = ByteBuffer.wrap(log.array(), second + 8, log.getInt(second) - Long.BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer shortRecord = ByteBuffer.allocate(8 + payload.remaining());
+        shortRecord.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload).flip();
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.truncate(second);
+            channel.write(shortRecord, second);
+        }
+        //when
+        try (WriteAheadLogProductRepository reopened = open(FsyncPolicy.NEVER)) {
+            //then
+            assertThat(reopened.getAll().map(Product::getId).toArray()).containsExactly("1");
+        }
+    }
+
+    @Test
+    public void shouldPersistBatchAndSkipWritesOfMissingProducts() throws IOException {
+        //given
+        Product first = product("1", "product");
+        Product second = product("2", "product");
+        boolean[] applied;
+        try (WriteAheadLogProductRepository repository = open(FsyncPolicy.ALWAYS)) {
+            //when
+            applied = repository.applyAll(Arrays.asList(ProductWrite.save(first), ProductWrite.save(second),
+                    ProductWrite.delete("1"), ProductWrite.delete("missing")));
+        }
+        //then
+        assertThat(applied).containsExactly(true, true, true, false);
+        try (WriteAheadLogProductRepository reopened = open(FsyncPolicy.ALWAYS)) {
+            assertThat(reopened.getAll().toArray()).containsExactly(second);
+        }
+    }
+
+    @Test
+    public void shouldRejectProductTooLargeForLogAndKeepLaterWrites() throws IOException {
+        //given
+        Product tooLarge = product("2", "x".repeat(2 << 20));
+        try (WriteAheadLogProductRepository repository = open(FsyncPolicy.ALWAYS)) {
+            repository.save(product("1", "product"));
+            //when
+            assertThatThrownBy(() -> repository.save(tooLarge)).isInstanceOf(TooLargeProductException.class);
+            assertThatThrownBy(() -> repository.applyAll(Arrays.asList(ProductWrite.save(product("3", "product")),
+                    ProductWrite.save(tooLarge)))).isInstanceOf(TooLargeProductException.class);
+            repository.save(product("4", "product"));
+        }
+        //then
+        try (WriteAheadLogProductRepository reopened = open(FsyncPolicy.ALWAYS)) {
+            assertThat(reopened.getAll().map(Product::getId).toArray()).containsExactly("1", "4");
+        }
+    }
+
+    private WriteAheadLogProductRepository open(FsyncPolicy fsyncPolicy) {
+        return new WriteAheadLogProductRepository(logFile.toString(), fsyncPolicy, 10);
+    }
+}